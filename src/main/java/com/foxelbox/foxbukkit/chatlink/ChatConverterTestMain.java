@@ -18,24 +18,212 @@
 
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
 
+import java.util.*;
+import java.util.regex.Pattern;
+
 public class ChatConverterTestMain {
+    private static final String[] CORPUS = new String[] {
+            "",
+            "No colors at all",
+            "<color name=\"red\">Already XML</color>",
+            "\u00a7nMinecraft Formatting\n" +
+            "\n" +
+            "\u00a7r\u00a700 \u00a711 \u00a722 \u00a733\n" +
+            "\u00a744 \u00a755 \u00a766 \u00a777\n" +
+            "\u00a788 \u00a799 \u00a7aa \u00a7bb\n" +
+            "\u00a7cc \u00a7dd \u00a7ee \u00a7ff\n" +
+            "\n" +
+            "\u00a7r\u00a70k \u00a7kMinecraft\n" +
+            "\u00a7rl \u00a7lMinecraft\n" +
+            "\u00a7rm \u00a7mMinecraft\n" +
+            "\u00a7rn \u00a7nMinecraft\n" +
+            "\u00a7ro \u00a7oMinecraft\n" +
+            "\u00a7rr \u00a7rMinecraft",
+            "\u00a76Z\u00a75ido's \u00a75\u00a7dD\u00a7co\u00a76r\u00a7ei\u00a7ad\u00a7bi\u00a79a\u00a75n",
+            "\u00a7c",
+            "\u00a7c \u00a7a",
+            "\u00a7l\u00a7m\u00a7n\u00a7o",
+            "\u00a7l \u00a7r",
+            "\u00a7lbold\u00a7l again\u00a7r plain",
+            "\u00a7fwhite stays white",
+            "\u00a7c\u00a7c\u00a7cred",
+            "\u00a7o\u00a7l \t\u00a7c",
+            "\u00a7Cupper \u00a7Lcase \u00a7kmagic \u00a7xunknown",
+            "[Rank] \u00a77Name",
+            "&lt;escaped&gt; \u00a7b&amp; text",
+            "<b>markup</b> \u00a7c<i> </i>red",
+            "\u00a7c<b></b>\u00a7l ",
+    };
+
     public static void main(String[] args) {
-        /*System.out.println(ChatMessageOut.convertLegacyColors(
-                "\u00a7nMinecraft Formatting\n" +
-                "\n" +
-                "\u00a7r\u00a700 \u00a711 \u00a722 \u00a733\n" +
-                "\u00a744 \u00a755 \u00a766 \u00a777\n" +
-                "\u00a788 \u00a799 \u00a7aa \u00a7bb\n" +
-                "\u00a7cc \u00a7dd \u00a7ee \u00a7ff\n" +
-                "\n" +
-                "\u00a7r\u00a70k \u00a7kMinecraft\n" +
-                "\u00a7rl \u00a7lMinecraft\n" +
-                "\u00a7rm \u00a7mMinecraft\n" +
-                "\u00a7rn \u00a7nMinecraft\n" +
-                "\u00a7ro \u00a7oMinecraft\n" +
-                "\u00a7rr \u00a7rMinecraft"
-        ));*/
-
-        System.out.println(ChatMessageOut.convertLegacyColors("\u00a76Z\u00a75ido's \u00a75\u00a7dD\u00a7co\u00a76r\u00a7ei\u00a7ad\u00a7bi\u00a79a\u00a75n"));
+        int failures = 0;
+        for(String input : CORPUS)
+            if(!check(input))
+                failures++;
+
+        final Random random = new Random(1234);
+        final char[] alphabet = "\u00a7\u00a7\u00a7\u00a70123456789abcdeflmnorkL \t<>/&x".toCharArray();
+        for(int i = 0; i < 200000; i++) {
+            final char[] input = new char[random.nextInt(24)];
+            for(int j = 0; j < input.length; j++)
+                input[j] = alphabet[random.nextInt(alphabet.length)];
+            if(!check(new String(input)))
+                failures++;
+        }
+
+        System.out.println(failures + " mismatches");
+
+        final int iterations = 1000000;
+        for(int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for(int i = 0; i < iterations; i++)
+                referenceConvertLegacyColors(CORPUS[i % CORPUS.length]);
+            final long reference = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for(int i = 0; i < iterations; i++)
+                ChatMessageOut.convertLegacyColors(CORPUS[i % CORPUS.length]);
+            final long current = System.nanoTime() - start;
+
+            System.out.println("reference: " + (reference / iterations) + "ns/op, current: " + (current / iterations) + "ns/op");
+        }
+    }
+
+    private static boolean check(String input) {
+        final String expected;
+        try {
+            expected = referenceConvertLegacyColors(input);
+        } catch (StringIndexOutOfBoundsException e) {
+            // The old converter threw on a trailing color char, the new one drops it
+            return true;
+        }
+        final String actual = ChatMessageOut.convertLegacyColors(input);
+        if(expected.equals(actual))
+            return true;
+        System.out.println("MISMATCH for " + input + "\n  expected: " + expected + "\n  actual:   " + actual);
+        return false;
+    }
+
+    // The original converter, kept as the reference the current one has to match
+    private static final char COLOR_CHAR = '\u00a7';
+    private static final Pattern FIX_REDUNDANT_TAGS = Pattern.compile("<([a-z]+)[^>]*>(\\s*)</\\1>", Pattern.CASE_INSENSITIVE);
+    private static final Map<Character, String> colorNames = new HashMap<>();
+    static {
+        colorNames.put('0', "black");
+        colorNames.put('1', "dark_blue");
+        colorNames.put('2', "dark_green");
+        colorNames.put('3', "dark_aqua");
+        colorNames.put('4', "dark_red");
+        colorNames.put('5', "dark_purple");
+        colorNames.put('6', "gold");
+        colorNames.put('7', "gray");
+        colorNames.put('8', "dark_gray");
+        colorNames.put('9', "blue");
+        colorNames.put('a', "green");
+        colorNames.put('b', "aqua");
+        colorNames.put('c', "red");
+        colorNames.put('d', "light_purple");
+        colorNames.put('e', "yellow");
+        colorNames.put('f', "white");
+    }
+
+    private static String referenceConvertLegacyColors(String in) {
+        StringBuilder out = new StringBuilder("<color name=\"white\">");
+
+        int lastPos = 0; char currentColor = 'f';
+
+        Set<String> openTagsSet = new HashSet<>();
+        Stack<String> openTags = new Stack<>();
+        openTagsSet.add("color");
+        openTags.push("color");
+
+        while(true) {
+            int pos = in.indexOf(COLOR_CHAR, lastPos);
+            if(pos < 0) {
+                if(lastPos == 0) {
+                    return in;
+                }
+                break;
+            }
+            char newColor = in.charAt(pos + 1);
+
+            if(pos > 0) {
+                out.append(in.substring(lastPos, pos));
+            }
+
+            lastPos = pos + 2;
+
+            if((newColor >= '0' && newColor <= '9') || (newColor >= 'a' && newColor <= 'f') || newColor == 'r') {
+
+                boolean doesNotChangeColor = newColor == 'r' || currentColor == newColor;
+
+                while(!openTags.empty()) {
+                    String tag = openTags.pop();
+                    if(doesNotChangeColor && tag.equals("color")) {
+                        continue;
+                    }
+                    out.append("</");
+                    out.append(tag);
+                    out.append('>');
+                }
+                openTagsSet.clear();
+
+                openTagsSet.add("color");
+                openTags.push("color");
+
+                if(doesNotChangeColor) {
+                    continue;
+                }
+
+                out.append("<color name=\"");
+                out.append(colorNames.get(newColor));
+                out.append("\">");
+
+                currentColor = newColor;
+            } else {
+                switch (newColor) {
+                    case 'l':
+                        if(!openTagsSet.contains("b")) {
+                            openTags.push("b");
+                            openTagsSet.add("b");
+                            out.append("<b>");
+                        }
+                        break;
+                    case 'm':
+                        if(!openTagsSet.contains("s")) {
+                            openTags.push("s");
+                            openTagsSet.add("s");
+                            out.append("<s>");
+                        }
+                        break;
+                    case 'n':
+                        if(!openTagsSet.contains("u")) {
+                            openTags.push("u");
+                            openTagsSet.add("u");
+                            out.append("<u>");
+                        }
+                        break;
+                    case 'o':
+                        if(!openTagsSet.contains("i")) {
+                            openTags.push("i");
+                            openTagsSet.add("i");
+                            out.append("<i>");
+                        }
+                        break;
+                }
+            }
+        }
+
+        if(lastPos < in.length()) {
+            out.append(in.substring(lastPos));
+        }
+        while(!openTags.empty()) {
+            String tag = openTags.pop();
+            out.append("</");
+            out.append(tag);
+            out.append('>');
+        }
+
+        return FIX_REDUNDANT_TAGS.matcher(out.toString()).replaceAll("$2");
     }
 }
@@ -17,15 +17,22 @@
 package com.foxelbox.foxbukkit.chatlink;
 
 import com.foxelbox.foxbukkit.chatlink.commands.ConvCommand;
+import com.foxelbox.foxbukkit.chatlink.commands.system.CommandLine;
 import com.foxelbox.foxbukkit.chatlink.commands.system.CommandSystem;
 import com.foxelbox.foxbukkit.chatlink.filter.MuteList;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
+import com.foxelbox.foxbukkit.chatlink.util.LinkStats;
+import com.foxelbox.foxbukkit.chatlink.util.MessageHelper;
+import com.foxelbox.foxbukkit.chatlink.util.MessageTemplate;
+import com.foxelbox.foxbukkit.chatlink.util.OnlinePlayerIndex;
 import com.foxelbox.foxbukkit.chatlink.util.PlayerHelper;
 import org.zeromq.ZMQ;
 
-import java.util.Queue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.regex.Pattern;
 
 public class ChatQueueHandler {
@@ -34,16 +41,32 @@ public class ChatQueueHandler {
 	public static final String KICK_FORMAT = "<color name=\"dark_red\">[-]</color> " + PLAYER_FORMAT + " <color name=\"yellow\">was kicked (%4$s)!</color>";
 	public static final String QUIT_FORMAT = "<color name=\"dark_red\">[-]</color> " + PLAYER_FORMAT + " <color name=\"yellow\">disconnected!</color>";
 	public static final String JOIN_FORMAT = "<color name=\"dark_green\">[+]</color> " + PLAYER_FORMAT + " <color name=\"yellow\">joined!</color>";
+
+	public static final MessageTemplate MESSAGE_TEMPLATE = MessageTemplate.register(MESSAGE_FORMAT);
+	public static final MessageTemplate KICK_TEMPLATE = MessageTemplate.register(KICK_FORMAT);
+	public static final MessageTemplate QUIT_TEMPLATE = MessageTemplate.register(QUIT_FORMAT);
+	public static final MessageTemplate JOIN_TEMPLATE = MessageTemplate.register(JOIN_FORMAT);
 	private static final Pattern REMOVE_DISALLOWED_CHARS = Pattern.compile("[\u00a7\r\n\t]");
 
 	private final ZMQ.Socket sender;
+	private final OutboundPublisher publisher;
 	private final ZMQ.Socket receiver;
+	private final InboundDispatcher inboundDispatcher;
 
 	private final Thread senderThread;
-	private final Queue<byte[]> messageQueue = new LinkedBlockingQueue<>();
+	private final OutboundQueue<OutboundMessage> messageQueue;
+	private volatile boolean senderParked = false;
 
 	public ChatQueueHandler() {
-		sender = Main.zmqContext.socket(ZMQ.PUB);
+		final int queueCapacity = Integer.parseInt(Main.configuration.getValue("outbound-queue-capacity", "10000"));
+		messageQueue = new OutboundQueue<>(
+				queueCapacity,
+				Integer.parseInt(Main.configuration.getValue("outbound-queue-protected-importance", "3")),
+				Integer.parseInt(Main.configuration.getValue("outbound-queue-protected-reserve", String.valueOf(queueCapacity / 4))));
+
+		// XPUB so we can see which frame formats the servers subscribe to
+		sender = Main.zmqContext.socket(ZMQ.XPUB);
+		sender.setXpubVerbose(true);
 		sender.setSendTimeOut(5000);
 		sender.setImmediate(true);
 		sender.setLinger(0);
@@ -52,6 +75,13 @@ public ChatQueueHandler() {
 				sender,
 				"fbchat-link2server",
 				Main.configuration.getValue("zmq-mdns-link2server", "default"));
+		publisher = new OutboundPublisher(sender,
+				Integer.parseInt(Main.configuration.getValue("outbound-batch-max-bytes", "65536")),
+				Integer.parseInt(Main.configuration.getValue("outbound-userinfo-cache-size", "1024")));
+
+		// Under load, wait a little for more messages so they share a batch frame
+		final long batchLingerNanos = Long.parseLong(Main.configuration.getValue("outbound-batch-linger-micros", "1000")) * 1000L;
+		final int batchLingerThreshold = Integer.parseInt(Main.configuration.getValue("outbound-batch-linger-threshold", "8"));
 
 		receiver = Main.zmqContext.socket(ZMQ.PULL);
 		receiver.setImmediate(true);
@@ -62,12 +92,36 @@ public ChatQueueHandler() {
 				"fbchat-server2link",
 				Main.configuration.getValue("zmq-mdns-server2link", "default"));
 
+		final int inboundWorkers = Integer.parseInt(Main.configuration.getValue("inbound-workers", String.valueOf(Runtime.getRuntime().availableProcessors())));
+		inboundDispatcher = new InboundDispatcher(this,
+				inboundWorkers,
+				Integer.parseInt(Main.configuration.getValue("inbound-shard-max-in-flight", "2")),
+				Integer.parseInt(Main.configuration.getValue("inbound-fair-quantum", "512")));
+
+		// Inbound frames larger than this are dropped and counted in inbound.dropped_oversized, chat messages are tiny
+		final int inboundMaxMessageBytes = Integer.parseInt(Main.configuration.getValue("inbound-max-message-bytes", "1048576"));
+		final AtomicLong inboundOversized = LinkStats.counter("inbound.dropped_oversized");
+
 		Thread t = new Thread() {
 			@Override
 			public void run() {
+				final InboundDecoder decoder = new InboundDecoder();
+				final byte[] buffer = new byte[inboundMaxMessageBytes];
 				while(!Thread.currentThread().isInterrupted()) {
-					byte[] str = receiver.recv(0);
-					onMessage(str);
+					final int size = receiver.recv(buffer, 0, buffer.length, 0);
+					if(size < 0)
+						continue;
+					if(size > buffer.length) {
+						// ZMQ already truncated it
+						inboundOversized.incrementAndGet();
+						System.err.println("Dropped inbound message of " + size + " bytes, over inbound-max-message-bytes");
+						continue;
+					}
+					try {
+						inboundDispatcher.dispatch(decoder.decode(buffer, 0, size));
+					} catch(Exception e) {
+						e.printStackTrace();
+					}
 				}
 			}
 		};
@@ -75,26 +129,40 @@ public void run() {
 		t.setName("ZMQ REP");
 		t.start();
 
+		final AtomicLong publishFailures = LinkStats.counter("outbound.publish_failures");
+		final AtomicLong publishDropped = LinkStats.counter("outbound.dropped_failed_publish");
 		senderThread = new Thread() {
 			@Override
 			public void run() {
+				final List<OutboundMessage> batch = new ArrayList<>();
+				int lastBatchSize = 0;
 				while(!Thread.currentThread().isInterrupted()) {
-					final byte[] message;
-					synchronized (messageQueue) {
-						message = messageQueue.poll();
-					}
-					if(message == null) {
-						try {
-							synchronized (this) {
-								wait();
-							}
-						} catch (InterruptedException e) {
-							return;
-						}
+					if(messageQueue.drainTo(batch) == 0) {
+						// Producers only unpark us while this is set, so re-check the queue after raising it
+						senderParked = true;
+						if(messageQueue.isEmpty())
+							LockSupport.park(this);
+						senderParked = false;
+						lastBatchSize = 0;
 						continue;
 					}
-					sender.send(CMO, ZMQ.SNDMORE);
-					sender.send(message, 0);
+
+					// Only linger while the previous batch was already busy, so a quiet link adds no latency
+					if(batchLingerNanos > 0 && lastBatchSize >= batchLingerThreshold && batch.size() < batchLingerThreshold) {
+						LockSupport.parkNanos(batchLingerNanos);
+						messageQueue.drainTo(batch);
+					}
+					lastBatchSize = batch.size();
+
+					try {
+						publisher.publish(batch);
+					} catch(Exception e) {
+						// Losing one batch beats losing the sender thread, and with it all outbound traffic
+						e.printStackTrace();
+						publishFailures.incrementAndGet();
+						publishDropped.addAndGet(batch.size());
+					}
+					batch.clear();
 				}
 			}
 		};
@@ -114,28 +182,49 @@ public void incomingMessage(final ChatMessageIn chatMessageIn) {
 		sendMessage(message);
 	}
 
-	private final static byte[] CMO = "CMO".getBytes();
-
 	public void sendMessage(ChatMessageOut message) {
-		final byte[] msg = message.toProtoBuf().toByteArray();
+		message.id = Main.messageIdAllocator.nextId();
+		message.timestamp = System.currentTimeMillis() / 1000;
+		messageQueue.offer(new OutboundMessage(message), message.importance);
+		wakeSender();
+	}
 
-		synchronized (messageQueue) {
-			messageQueue.add(msg);
-		}
-		synchronized (senderThread) {
-			senderThread.notify();
+	public void sendMessages(List<ChatMessageOut> messages) {
+		if(messages.isEmpty())
+			return;
+
+		final long timestamp = System.currentTimeMillis() / 1000;
+		final int maxReserve = Main.messageIdAllocator.getBlockSize();
+		for(int start = 0; start < messages.size(); start += maxReserve) {
+			final int end = Math.min(messages.size(), start + maxReserve);
+			long id = Main.messageIdAllocator.reserve(end - start);
+			for(int i = start; i < end; i++) {
+				final ChatMessageOut message = messages.get(i);
+				message.id = id++;
+				message.timestamp = timestamp;
+				messageQueue.offer(new OutboundMessage(message), message.importance);
+			}
 		}
+
+		wakeSender();
+	}
+
+	private void wakeSender() {
+		if(senderParked)
+			LockSupport.unpark(senderThread);
 	}
 
-	private static ChatMessageOut runFormatAndStore(ChatMessageIn messageIn, String format, String[] formatArgs) {
-		return new ChatMessageOut(messageIn, format, formatArgs);
+	private static ChatMessageOut runFormatAndStore(ChatMessageIn messageIn, MessageTemplate format, String[] renderedArgs) {
+		final ChatMessageOut message = new ChatMessageOut(messageIn);
+		message.setRenderedContents(format, renderedArgs);
+		return message;
 	}
 
 	private static ChatMessageOut formatMessage(ChatMessageIn messageIn) {
 		final String plyN = messageIn.from.name;
 		final String formattedName = PlayerHelper.getFullPlayerName(messageIn.from.uuid, plyN);
 
-		final Player sender = new Player(messageIn.from.uuid, messageIn.from.name);
+		final Player sender = Player.getPlayerFromMessage(messageIn);
 
 		String messageStr = messageIn.contents;
 
@@ -143,10 +232,12 @@ private static ChatMessageOut formatMessage(ChatMessageIn messageIn) {
 			case PLAYERSTATE:
 				switch(messageStr) {
 					case "join":
-						return runFormatAndStore(messageIn, JOIN_FORMAT, new String[]{plyN, messageIn.from.uuid.toString(), formattedName});
+						OnlinePlayerIndex.instance.playerJoined(messageIn.from.uuid, plyN, messageIn.server);
+						return runFormatAndStore(messageIn, JOIN_TEMPLATE, MessageHelper.renderPlayerArgs(plyN, messageIn.from.uuid, formattedName));
 
 					case "quit":
-						return runFormatAndStore(messageIn, QUIT_FORMAT, new String[]{plyN, messageIn.from.uuid.toString(), formattedName});
+						OnlinePlayerIndex.instance.playerQuit(messageIn.from.uuid, messageIn.server);
+						return runFormatAndStore(messageIn, QUIT_TEMPLATE, MessageHelper.renderPlayerArgs(plyN, messageIn.from.uuid, formattedName));
 				}
 
 				if(messageStr.startsWith("kick ")) {
@@ -163,28 +254,13 @@ private static ChatMessageOut formatMessage(ChatMessageIn messageIn) {
 			case TEXT:
 				messageStr = REMOVE_DISALLOWED_CHARS.matcher(messageStr).replaceAll("");
 
-				if(messageStr.length() > 1) {
-					if(messageStr.charAt(0) == '#' && messageStr.charAt(1) == '!')
-						messageStr = "/staffnotice " + messageStr.substring(2);
+				if(messageStr.isEmpty()) {
+					return null;
 				}
 
-				if(messageStr.charAt(0) == '#') {
-					messageStr = "/opchat " + messageStr.substring(1);
-				}
-
-				if(messageStr.charAt(0) == '/') {
-					messageStr = messageStr.substring(1).trim();
-					int argPos = messageStr.indexOf(' ');
-					final String argStr;
-					final String commandName;
-					if(argPos > 0) {
-						argStr = messageStr.substring(argPos + 1);
-						commandName = messageStr.substring(0, argPos);
-					} else {
-						argStr = "";
-						commandName = messageStr;
-					}
-					return CommandSystem.instance.runCommand(sender, messageIn, commandName, argStr);
+				final CommandLine commandLine = CommandLine.parse(messageStr);
+				if(commandLine != null) {
+					return CommandSystem.instance.runCommand(sender, messageIn, commandLine);
 				} else {
 					if(MuteList.isMuted(sender)) {
 						return null;
@@ -200,18 +276,10 @@ private static ChatMessageOut formatMessage(ChatMessageIn messageIn) {
 
 					System.err.println("<" + plyN + "> "  + messageStr);
 
-					return runFormatAndStore(messageIn, MESSAGE_FORMAT, new String[]{plyN, messageIn.from.uuid.toString(), formattedName, messageStr});
+					return runFormatAndStore(messageIn, MESSAGE_TEMPLATE, MessageHelper.renderPlayerArgs(plyN, messageIn.from.uuid, formattedName, messageStr));
 				}
 		}
 
 		throw new RuntimeException("Unprocessable message: " + messageIn.type + " => " + messageStr);
 	}
-
-	public void onMessage(final byte[] c_message) {
-		try {
-			incomingMessage(ChatMessageIn.fromProtoBuf(Messages.ChatMessageIn.parseFrom(c_message)));
-		} catch(Exception e) {
-			e.printStackTrace();
-		}
-	}
 }
@@ -0,0 +1,206 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink;
+
+import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
+import com.foxelbox.foxbukkit.chatlink.json.UserInfo;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Decodes ChatMessageIn frames straight from the receive buffer, without building Messages.ChatMessageIn first.
+ * Only used from the receiver thread.
+ *
+ * Accepts and rejects the same frames as Messages.ChatMessageIn.parseFrom and fills in the same defaults.
+ * This is the only inbound decode path, keep it in step with messages.proto.
+ * Server and player names come from a small interning cache, as they repeat all the time.
+ */
+class InboundDecoder {
+	private static final int LENGTH_DELIMITED = WireFormat.WIRETYPE_LENGTH_DELIMITED;
+	private static final int VARINT = WireFormat.WIRETYPE_VARINT;
+
+	private static final int SERVER_TAG = tag(Messages.ChatMessageIn.SERVER_FIELD_NUMBER, LENGTH_DELIMITED);
+	private static final int FROM_TAG = tag(Messages.ChatMessageIn.FROM_FIELD_NUMBER, LENGTH_DELIMITED);
+	private static final int TIMESTAMP_TAG = tag(Messages.ChatMessageIn.TIMESTAMP_FIELD_NUMBER, VARINT);
+	private static final int CONTEXT_TAG = tag(Messages.ChatMessageIn.CONTEXT_FIELD_NUMBER, LENGTH_DELIMITED);
+	private static final int CONTENTS_TAG = tag(Messages.ChatMessageIn.CONTENTS_FIELD_NUMBER, LENGTH_DELIMITED);
+	private static final int TYPE_TAG = tag(Messages.ChatMessageIn.TYPE_FIELD_NUMBER, VARINT);
+
+	private static final int USER_UUID_TAG = tag(Messages.UserInfo.UUID_FIELD_NUMBER, LENGTH_DELIMITED);
+	private static final int USER_NAME_TAG = tag(Messages.UserInfo.NAME_FIELD_NUMBER, LENGTH_DELIMITED);
+
+	private static final int MSB_TAG = tag(Messages.UUID.MSB_FIELD_NUMBER, VARINT);
+	private static final int LSB_TAG = tag(Messages.UUID.LSB_FIELD_NUMBER, VARINT);
+
+	private static final int INTERN_SLOTS = 512;
+	private static final int INTERN_MAX_LENGTH = 64;
+
+	private final byte[][] internedBytes = new byte[INTERN_SLOTS][];
+	private final String[] internedStrings = new String[INTERN_SLOTS];
+
+	private static final int UUID_MSB = 1;
+	private static final int UUID_LSB = 2;
+	private static final int UUID_COMPLETE = UUID_MSB | UUID_LSB;
+
+	private byte[] buffer;
+	private int offset;
+
+	// Per message state
+	private final long[] contextBits = new long[2];
+	private int contextFields;
+	private final long[] fromUUIDBits = new long[2];
+	private int fromUUIDFields;
+	private String fromName;
+
+	ChatMessageIn decode(byte[] buffer, int offset, int length) throws IOException {
+		this.buffer = buffer;
+		this.offset = offset;
+
+		final CodedInputStream in = CodedInputStream.newInstance(buffer, offset, length);
+		final ChatMessageIn message = new ChatMessageIn();
+		message.server = "";
+		message.type = Messages.MessageType.TEXT;
+		message.contents = "";
+
+		// Repeated sub-messages merge into each other and required fields are only checked at the end,
+		// like the generated code does
+		boolean hasServer = false, hasTimestamp = false, hasFrom = false;
+		fromName = null;
+		fromUUIDFields = 0;
+		contextFields = 0;
+
+		int tag;
+		while((tag = in.readTag()) != 0) {
+			if(tag == SERVER_TAG) {
+				message.server = readInterned(in);
+				hasServer = true;
+			} else if(tag == FROM_TAG) {
+				final int limit = in.pushLimit(in.readRawVarint32());
+				mergeUserInfo(in);
+				in.popLimit(limit);
+				hasFrom = true;
+			} else if(tag == TIMESTAMP_TAG) {
+				message.timestamp = in.readInt64();
+				hasTimestamp = true;
+			} else if(tag == CONTEXT_TAG) {
+				final int limit = in.pushLimit(in.readRawVarint32());
+				contextFields |= mergeUUID(in, contextBits);
+				in.popLimit(limit);
+			} else if(tag == CONTENTS_TAG) {
+				message.contents = in.readString();
+			} else if(tag == TYPE_TAG) {
+				// Unknown values keep the default, like the generated code
+				final Messages.MessageType type = Messages.MessageType.valueOf(in.readEnum());
+				if(type != null)
+					message.type = type;
+			} else if(!in.skipField(tag)) {
+				throw new InvalidProtocolBufferException("Unexpected end-group tag");
+			}
+		}
+
+		if(!hasServer || !hasTimestamp || contextFields != UUID_COMPLETE)
+			throw new InvalidProtocolBufferException("Message missing required fields");
+		message.context = new UUID(contextBits[0], contextBits[1]);
+
+		if(hasFrom) {
+			if(fromName == null || fromUUIDFields != UUID_COMPLETE)
+				throw new InvalidProtocolBufferException("Message missing required fields");
+			message.from = new UserInfo(new UUID(fromUUIDBits[0], fromUUIDBits[1]), fromName);
+		} else {
+			// Senders are never null, even if the message didn't have one
+			message.from = new UserInfo(new UUID(0, 0), "");
+		}
+
+		return message;
+	}
+
+	private void mergeUserInfo(CodedInputStream in) throws IOException {
+		int tag;
+		while((tag = in.readTag()) != 0) {
+			if(tag == USER_UUID_TAG) {
+				final int limit = in.pushLimit(in.readRawVarint32());
+				fromUUIDFields |= mergeUUID(in, fromUUIDBits);
+				in.popLimit(limit);
+			} else if(tag == USER_NAME_TAG) {
+				fromName = readInterned(in);
+			} else if(!in.skipField(tag)) {
+				throw new InvalidProtocolBufferException("Unexpected end-group tag");
+			}
+		}
+	}
+
+	/**
+	 * @return which of UUID_MSB and UUID_LSB were read into bits
+	 */
+	private static int mergeUUID(CodedInputStream in, long[] bits) throws IOException {
+		int fields = 0;
+		int tag;
+		while((tag = in.readTag()) != 0) {
+			if(tag == MSB_TAG) {
+				bits[0] = in.readSInt64();
+				fields |= UUID_MSB;
+			} else if(tag == LSB_TAG) {
+				bits[1] = in.readSInt64();
+				fields |= UUID_LSB;
+			} else if(!in.skipField(tag)) {
+				throw new InvalidProtocolBufferException("Unexpected end-group tag");
+			}
+		}
+		return fields;
+	}
+
+	private String readInterned(CodedInputStream in) throws IOException {
+		final int length = in.readRawVarint32();
+		final int start = offset + in.getTotalBytesRead();
+		// Also checks the string is really there
+		in.skipRawBytes(length);
+
+		if(length > INTERN_MAX_LENGTH)
+			return new String(buffer, start, length, StandardCharsets.UTF_8);
+
+		int hash = length;
+		for(int i = start; i < start + length; i++)
+			hash = 31 * hash + buffer[i];
+		final int slot = (hash ^ (hash >>> 16)) & (INTERN_SLOTS - 1);
+
+		final byte[] interned = internedBytes[slot];
+		if(interned != null && interned.length == length && regionEquals(interned, buffer, start))
+			return internedStrings[slot];
+
+		final String value = new String(buffer, start, length, StandardCharsets.UTF_8);
+		internedBytes[slot] = Arrays.copyOfRange(buffer, start, start + length);
+		internedStrings[slot] = value;
+		return value;
+	}
+
+	private static boolean regionEquals(byte[] interned, byte[] buffer, int start) {
+		for(int i = 0; i < interned.length; i++)
+			if(interned[i] != buffer[start + i])
+				return false;
+		return true;
+	}
+
+	private static int tag(int field, int wireType) {
+		return (field << 3) | wireType;
+	}
+}
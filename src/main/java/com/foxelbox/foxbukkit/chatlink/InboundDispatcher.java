@@ -0,0 +1,246 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink;
+
+import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
+import com.foxelbox.foxbukkit.chatlink.util.LinkStats;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Processes inbound messages on a fixed set of single-threaded shards.
+ *
+ * Messages are sharded by sender UUID, so one player's messages are handled in order while
+ * different players are processed in parallel.
+ *
+ * Within a shard, every source server gets its own queue and those are served by deficit round-robin,
+ * weighted by message length. Only a limited number of messages are handed to a shard's thread at once,
+ * so a server flooding us queues up behind its own backlog instead of everybody else's chat.
+ * The limit is per shard, so a shard stuck on a slow command only holds up its own players.
+ */
+public class InboundDispatcher {
+	// So even empty messages cost something
+	private static final int BASE_COST = 64;
+
+	private class Shard {
+		private final ThreadPoolExecutor executor;
+		private final AtomicLong processed;
+		private final AtomicLong latencyMicros;
+
+		// All guarded by this
+		private final Map<String, ServerQueue> serverQueues = new HashMap<>();
+		private final ArrayDeque<ServerQueue> activeQueues = new ArrayDeque<>();
+		private int waiting = 0;
+		private int inFlight = 0;
+
+		Shard(int index) {
+			executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Inbound shard " + index).build());
+
+			final String prefix = "inbound.shard" + index;
+			processed = LinkStats.counter(prefix + ".processed");
+			latencyMicros = LinkStats.counter(prefix + ".latency_micros");
+			LinkStats.gauge(prefix + ".depth", new LinkStats.Gauge() {
+				@Override
+				public long get() {
+					synchronized (Shard.this) {
+						return waiting + inFlight;
+					}
+				}
+			});
+		}
+
+		synchronized void enqueue(Pending pending) {
+			ServerQueue serverQueue = serverQueues.get(pending.source.server);
+			if(serverQueue == null) {
+				serverQueue = new ServerQueue();
+				serverQueues.put(pending.source.server, serverQueue);
+			}
+
+			serverQueue.queue.addLast(pending);
+			waiting++;
+			if(!serverQueue.active) {
+				serverQueue.active = true;
+				activeQueues.addLast(serverQueue);
+			}
+			submitWaiting();
+		}
+
+		private synchronized void finished() {
+			inFlight--;
+			submitWaiting();
+		}
+
+		private void submitWaiting() {
+			while(inFlight < maxInFlight && !activeQueues.isEmpty()) {
+				inFlight++;
+				waiting--;
+				submit(takeNext());
+			}
+		}
+
+		private Pending takeNext() {
+			for(;;) {
+				final ServerQueue serverQueue = activeQueues.peekFirst();
+				if(!serverQueue.visited) {
+					serverQueue.visited = true;
+					serverQueue.deficit += quantum;
+				}
+
+				final Pending head = serverQueue.queue.peekFirst();
+				if(head.cost <= serverQueue.deficit) {
+					serverQueue.queue.pollFirst();
+					serverQueue.deficit -= head.cost;
+					if(serverQueue.queue.isEmpty()) {
+						// Idle servers don't save up credit
+						activeQueues.pollFirst();
+						serverQueue.active = false;
+						serverQueue.visited = false;
+						serverQueue.deficit = 0;
+					}
+					return head;
+				}
+
+				// Out of credit for this round, the next server's turn
+				activeQueues.pollFirst();
+				serverQueue.visited = false;
+				activeQueues.addLast(serverQueue);
+			}
+		}
+
+		private void submit(final Pending pending) {
+			final long queuedAt = System.nanoTime();
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						handler.incomingMessage(pending.messageIn);
+					} catch (Exception e) {
+						e.printStackTrace();
+					} finally {
+						finished();
+					}
+					final long now = System.nanoTime();
+					processed.incrementAndGet();
+					latencyMicros.addAndGet((now - queuedAt) / 1000);
+					pending.source.processed.incrementAndGet();
+					pending.source.latencyMicros.addAndGet((now - pending.receivedAt) / 1000);
+				}
+			});
+		}
+	}
+
+	private static class Pending {
+		final ChatMessageIn messageIn;
+		final ServerStats source;
+		final long receivedAt = System.nanoTime();
+		final int cost;
+
+		Pending(ChatMessageIn messageIn, ServerStats source) {
+			this.messageIn = messageIn;
+			this.source = source;
+			this.cost = BASE_COST + ((messageIn.contents != null) ? messageIn.contents.length() : 0);
+		}
+	}
+
+	/**
+	 * One server's messages for one shard, guarded by the shard
+	 */
+	private static class ServerQueue {
+		private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+		private boolean active = false;
+		private boolean visited = false;
+		private int deficit = 0;
+	}
+
+	private static class ServerStats {
+		private final String server;
+
+		private final AtomicLong received;
+		private final AtomicLong processed;
+		private final AtomicLong latencyMicros;
+
+		ServerStats(final String server) {
+			this.server = server;
+			final String prefix = "inbound.server." + server;
+			received = LinkStats.counter(prefix + ".received");
+			processed = LinkStats.counter(prefix + ".processed");
+			latencyMicros = LinkStats.counter(prefix + ".latency_micros");
+		}
+	}
+
+	private final ChatQueueHandler handler;
+	private final Shard[] shards;
+	private final int maxInFlight;
+	private final int quantum;
+
+	private final Map<String, ServerStats> serverStats = new HashMap<>();
+
+	/**
+	 * @param maxInFlight messages handed to each shard's thread at once
+	 */
+	public InboundDispatcher(ChatQueueHandler handler, int shardCount, int maxInFlight, int quantum) {
+		this.handler = handler;
+		this.maxInFlight = Math.max(1, maxInFlight);
+		this.quantum = Math.max(1, quantum);
+		shards = new Shard[Math.max(1, shardCount)];
+		for(int i = 0; i < shards.length; i++)
+			shards[i] = new Shard(i);
+	}
+
+	public void dispatch(ChatMessageIn messageIn) {
+		final Pending pending = new Pending(messageIn, getServerStats((messageIn.server != null) ? messageIn.server : ""));
+		pending.source.received.incrementAndGet();
+		shardFor(messageIn).enqueue(pending);
+	}
+
+	private synchronized ServerStats getServerStats(String server) {
+		ServerStats stats = serverStats.get(server);
+		if(stats == null) {
+			final ServerStats newStats = new ServerStats(server);
+			LinkStats.gauge("inbound.server." + server + ".depth", new LinkStats.Gauge() {
+				@Override
+				public long get() {
+					long depth = 0;
+					for(Shard shard : shards) {
+						synchronized (shard) {
+							final ServerQueue serverQueue = shard.serverQueues.get(newStats.server);
+							if(serverQueue != null)
+								depth += serverQueue.queue.size();
+						}
+					}
+					return depth;
+				}
+			});
+			serverStats.put(server, newStats);
+			stats = newStats;
+		}
+		return stats;
+	}
+
+	private Shard shardFor(ChatMessageIn messageIn) {
+		final int hash = (messageIn.from != null && messageIn.from.uuid != null) ? messageIn.from.uuid.hashCode() : 0;
+		return shards[(hash & Integer.MAX_VALUE) % shards.length];
+	}
+}
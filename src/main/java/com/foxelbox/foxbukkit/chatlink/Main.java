@@ -21,6 +21,8 @@
 import com.foxelbox.dependencies.threading.SimpleThreadCreator;
 import com.foxelbox.foxbukkit.chatlink.commands.system.CommandSystem;
 import com.foxelbox.foxbukkit.chatlink.permissions.FoxBukkitPermissionHandler;
+import com.foxelbox.foxbukkit.chatlink.util.LinkStats;
+import com.foxelbox.foxbukkit.chatlink.util.OnlinePlayerIndex;
 import org.zeromq.ZMQ;
 
 import java.io.BufferedReader;
@@ -33,6 +35,8 @@ public class Main {
 
 	public static RedisManager redisManager;
 
+	public static MessageIdAllocator messageIdAllocator;
+
 	public static ZMQ.Context zmqContext;
 
 	public static ChatQueueHandler chatQueueHandler;
@@ -40,13 +44,20 @@ public class Main {
 	public static void main(String[] args) throws IOException {
 		configuration = new Configuration(getDataFolder());
 		redisManager = new RedisManager(new SimpleThreadCreator(), configuration);
+		messageIdAllocator = new MessageIdAllocator(Integer.parseInt(configuration.getValue("message-id-block-size", "1000")));
 		zmqContext = ZMQ.context(4);
 
+		OnlinePlayerIndex.instance.start(Integer.parseInt(configuration.getValue("online-players-refresh-interval", "10")));
+
 		CommandSystem.instance.scanCommands();
 		FoxBukkitPermissionHandler.instance.load();
 
 		chatQueueHandler = new ChatQueueHandler();
 
+		final int statsInterval = Integer.parseInt(configuration.getValue("stats-publish-interval", "30"));
+		if(statsInterval > 0)
+			LinkStats.startPublishing("chatLinkStats:" + configuration.getValue("stats-instance-name", "default"), statsInterval);
+
 		System.out.println("READY");
 
 		Thread t = new Thread() {
@@ -0,0 +1,171 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink;
+
+import com.foxelbox.foxbukkit.chatlink.util.LinkStats;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out message IDs from blocks leased off the shared Redis counter.
+ *
+ * Every lease is a single INCRBY, so the counter only ever moves forward: IDs never repeat across
+ * restarts or between several link instances, and IDs from one instance are strictly increasing.
+ * The next block is leased in the background once the current one runs low.
+ */
+public class MessageIdAllocator {
+	private static final String REDIS_KEY = "lastMessageID";
+
+	private static class IdBlock {
+		final long last;
+		final AtomicLong next;
+
+		IdBlock(long first, long last) {
+			this.last = last;
+			this.next = new AtomicLong(first);
+		}
+
+		long remaining() {
+			return Math.max(0, last - next.get() + 1);
+		}
+	}
+
+	private final int blockSize;
+	private final int refillThreshold;
+
+	private final Object leaseLock = new Object();
+	private volatile IdBlock currentBlock = new IdBlock(1, 0);
+	private IdBlock nextBlock = null;
+	private boolean refillPending = false;
+
+	private final ExecutorService refillExecutor = Executors.newSingleThreadExecutor(
+			new ThreadFactoryBuilder().setDaemon(true).setNameFormat("MessageID refill").build()
+	);
+
+	private final AtomicLong leases = LinkStats.counter("messageid.leases");
+	private final AtomicLong leasedIds = LinkStats.counter("messageid.leased_ids");
+	private final AtomicLong backgroundRefills = LinkStats.counter("messageid.refills");
+	private final AtomicLong refillFailures = LinkStats.counter("messageid.refill_failures");
+	private final AtomicLong stalls = LinkStats.counter("messageid.stalls");
+
+	public MessageIdAllocator(int blockSize) {
+		if(blockSize < 1)
+			throw new IllegalArgumentException("Block size must be positive");
+		this.blockSize = blockSize;
+		this.refillThreshold = Math.max(1, blockSize / 4);
+
+		LinkStats.gauge("messageid.remaining", new LinkStats.Gauge() {
+			@Override
+			public long get() {
+				return currentBlock.remaining();
+			}
+		});
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	public long nextId() {
+		return reserve(1);
+	}
+
+	/**
+	 * Reserves count consecutive IDs and returns the first one.
+	 */
+	public long reserve(int count) {
+		if(count < 1 || count > blockSize)
+			throw new IllegalArgumentException("Can only reserve between 1 and " + blockSize + " IDs at once");
+
+		while(true) {
+			final IdBlock block = currentBlock;
+			final long first = block.next.getAndAdd(count);
+			final long remaining = block.last - (first + count - 1);
+			if(remaining >= 0) {
+				if(remaining < refillThreshold && remaining + count >= refillThreshold)
+					requestRefill();
+				return first;
+			}
+			rollOver(block);
+		}
+	}
+
+	private void rollOver(IdBlock exhausted) {
+		synchronized (leaseLock) {
+			if(currentBlock != exhausted)
+				return;
+
+			while(nextBlock == null) {
+				if(!refillPending) {
+					// Nothing in flight (first use or failed refill), lease inline
+					stalls.incrementAndGet();
+					nextBlock = lease();
+					break;
+				}
+				try {
+					leaseLock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException("Interrupted while waiting for message IDs", e);
+				}
+			}
+
+			currentBlock = nextBlock;
+			nextBlock = null;
+		}
+		requestRefill();
+	}
+
+	private void requestRefill() {
+		synchronized (leaseLock) {
+			if(nextBlock != null || refillPending)
+				return;
+			refillPending = true;
+		}
+
+		refillExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				IdBlock block = null;
+				try {
+					block = lease();
+					backgroundRefills.incrementAndGet();
+				} catch (Exception e) {
+					refillFailures.incrementAndGet();
+					e.printStackTrace();
+				}
+
+				synchronized (leaseLock) {
+					refillPending = false;
+					if(nextBlock == null)
+						nextBlock = block;
+					leaseLock.notifyAll();
+				}
+			}
+		});
+	}
+
+	private IdBlock lease() {
+		final long last = Main.redisManager.incrBy(REDIS_KEY, blockSize);
+		leases.incrementAndGet();
+		leasedIds.addAndGet(blockSize);
+		return new IdBlock(last - blockSize + 1, last);
+	}
+}
@@ -0,0 +1,225 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink;
+
+import com.foxelbox.foxbukkit.chatlink.util.LinkStats;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Encodes OutboundMessages back to back into one reused buffer. Only used from the sender thread.
+ *
+ * Writes the same bytes ChatMessageOut.toProtoBuf(templated, binaryPlayers).toByteArray() would,
+ * without building the message first.
+ */
+class OutboundEncoder {
+	private byte[] buffer = new byte[16384];
+	private int[] ends = new int[64];
+	private int count = 0;
+
+	private final Map<UUID, EncodedUserInfo> userInfos;
+
+	private final AtomicLong userInfoHits = LinkStats.counter("outbound.userinfo.hits");
+	private final AtomicLong userInfoMisses = LinkStats.counter("outbound.userinfo.misses");
+
+	OutboundEncoder(final int userInfoCacheSize) {
+		this.userInfos = new LinkedHashMap<UUID, EncodedUserInfo>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<UUID, EncodedUserInfo> eldest) {
+				return size() > userInfoCacheSize;
+			}
+		};
+	}
+
+	void clear() {
+		count = 0;
+	}
+
+	/**
+	 * @return the slot the encoded message can be read back from until the next clear()
+	 */
+	int encode(OutboundMessage message, boolean templated, boolean binaryPlayers) {
+		final EncodedUserInfo from = (message.fromUUID != null) ? getUserInfo(message.fromUUID, message.fromName) : null;
+		templated &= message.template != null;
+
+		final int offset = getOffset(count);
+		ensureCapacity(offset + maxSize(message, from, templated, binaryPlayers));
+
+		final CodedOutputStream out = CodedOutputStream.newInstance(buffer, offset, buffer.length - offset);
+		try {
+			writeMessage(out, message, from, templated, binaryPlayers);
+		} catch (IOException e) {
+			// Can't happen, the buffer was sized for the message
+			throw new IllegalStateException(e);
+		}
+
+		if(count == ends.length)
+			ends = Arrays.copyOf(ends, count * 2);
+		ends[count] = buffer.length - out.spaceLeft();
+		return count++;
+	}
+
+	/**
+	 * Only valid after the last encode() before reading, encoding may move everything to a bigger buffer
+	 */
+	byte[] getBuffer() {
+		return buffer;
+	}
+
+	int getOffset(int slot) {
+		return (slot > 0) ? ends[slot - 1] : 0;
+	}
+
+	int getLength(int slot) {
+		return ends[slot] - getOffset(slot);
+	}
+
+	private void ensureCapacity(int size) {
+		if(buffer.length < size)
+			buffer = Arrays.copyOf(buffer, Math.max(size, buffer.length * 2));
+	}
+
+	private EncodedUserInfo getUserInfo(UUID uuid, String name) {
+		EncodedUserInfo userInfo = userInfos.get(uuid);
+		if(userInfo != null && userInfo.name.equals(name)) {
+			userInfoHits.incrementAndGet();
+			return userInfo;
+		}
+		userInfoMisses.incrementAndGet();
+
+		userInfo = new EncodedUserInfo(uuid, name);
+		userInfos.put(uuid, userInfo);
+		return userInfo;
+	}
+
+	// Fields in tag order, like the generated code writes them
+	private static void writeMessage(CodedOutputStream out, OutboundMessage message, EncodedUserInfo from, boolean templated, boolean binaryPlayers) throws IOException {
+		out.writeInt64(Messages.ChatMessageOut.ID_FIELD_NUMBER, message.id);
+		if(message.server != null)
+			out.writeString(Messages.ChatMessageOut.SERVER_FIELD_NUMBER, message.server);
+		if(from != null) {
+			out.writeTag(Messages.ChatMessageOut.FROM_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			out.writeRawVarint32(from.bytes.length);
+			out.writeRawBytes(from.bytes);
+		}
+		out.writeInt64(Messages.ChatMessageOut.TIMESTAMP_FIELD_NUMBER, message.timestamp);
+		writeUUID(out, Messages.ChatMessageOut.CONTEXT_FIELD_NUMBER, message.context);
+		if(!message.finalizeContext)
+			out.writeBool(Messages.ChatMessageOut.FINALIZECONTEXT_FIELD_NUMBER, false);
+		if(!templated && message.contents != null)
+			out.writeString(Messages.ChatMessageOut.CONTENTS_FIELD_NUMBER, message.contents);
+		if(message.type != null && message.type != Messages.MessageType.TEXT)
+			out.writeEnum(Messages.ChatMessageOut.TYPE_FIELD_NUMBER, message.type.getNumber());
+		if(message.toType != Messages.TargetType.ALL) {
+			out.writeTag(Messages.ChatMessageOut.TO_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			out.writeRawVarint32(targetSize(message, binaryPlayers));
+			out.writeEnum(Messages.MessageTarget.TYPE_FIELD_NUMBER, message.toType.getNumber());
+			if(message.toFilter != null)
+				for(String filter : message.toFilter)
+					out.writeString(Messages.MessageTarget.FILTER_FIELD_NUMBER, filter);
+			if(message.toPlayers != null && !binaryPlayers)
+				for(String player : message.toPlayerStrings)
+					out.writeString(Messages.MessageTarget.FILTER_FIELD_NUMBER, player);
+			if(message.toPlayers != null && binaryPlayers)
+				for(UUID player : message.toPlayers)
+					writeUUID(out, Messages.MessageTarget.PLAYERS_FIELD_NUMBER, player);
+		}
+		if(templated) {
+			out.writeInt32(Messages.ChatMessageOut.TEMPLATEID_FIELD_NUMBER, message.template.getId());
+			for(String arg : message.templateArgs)
+				out.writeString(Messages.ChatMessageOut.TEMPLATEARGS_FIELD_NUMBER, arg);
+		}
+	}
+
+	private static void writeUUID(CodedOutputStream out, int field, UUID uuid) throws IOException {
+		out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		out.writeRawVarint32(uuidSize(uuid));
+		out.writeSInt64(Messages.UUID.MSB_FIELD_NUMBER, uuid.getMostSignificantBits());
+		out.writeSInt64(Messages.UUID.LSB_FIELD_NUMBER, uuid.getLeastSignificantBits());
+	}
+
+	private static int uuidSize(UUID uuid) {
+		return CodedOutputStream.computeSInt64Size(Messages.UUID.MSB_FIELD_NUMBER, uuid.getMostSignificantBits())
+				+ CodedOutputStream.computeSInt64Size(Messages.UUID.LSB_FIELD_NUMBER, uuid.getLeastSignificantBits());
+	}
+
+	private static int targetSize(OutboundMessage message, boolean binaryPlayers) {
+		int size = CodedOutputStream.computeEnumSize(Messages.MessageTarget.TYPE_FIELD_NUMBER, message.toType.getNumber());
+		if(message.toFilter != null)
+			for(String filter : message.toFilter)
+				size += CodedOutputStream.computeStringSize(Messages.MessageTarget.FILTER_FIELD_NUMBER, filter);
+		if(message.toPlayers != null && !binaryPlayers)
+			for(String player : message.toPlayerStrings)
+				size += CodedOutputStream.computeStringSize(Messages.MessageTarget.FILTER_FIELD_NUMBER, player);
+		if(message.toPlayers != null && binaryPlayers)
+			for(UUID player : message.toPlayers)
+				size += 2 + uuidSize(player);
+		return size;
+	}
+
+	/**
+	 * An upper bound, without encoding the strings just to measure them
+	 */
+	private static int maxSize(OutboundMessage message, EncodedUserInfo from, boolean templated, boolean binaryPlayers) {
+		// id, timestamp, context, finalizeContext, type and templateId, with tags
+		int size = 64;
+		size += maxStringSize(message.server);
+		if(from != null)
+			size += 6 + from.bytes.length;
+		if(!templated)
+			size += maxStringSize(message.contents);
+		if(message.toType != Messages.TargetType.ALL) {
+			size += 8;
+			if(message.toFilter != null)
+				for(String filter : message.toFilter)
+					size += maxStringSize(filter);
+			if(message.toPlayers != null)
+				// 36 character UUID strings or two 10 byte varints, with tags and lengths
+				size += message.toPlayers.length * (binaryPlayers ? 24 : 40);
+		}
+		if(templated)
+			for(String arg : message.templateArgs)
+				size += maxStringSize(arg);
+		return size;
+	}
+
+	private static int maxStringSize(String s) {
+		// Tag and length varint, then at most 3 UTF-8 bytes per UTF-16 char
+		return (s != null) ? 7 + s.length() * 3 : 0;
+	}
+
+	private static class EncodedUserInfo {
+		final String name;
+		final byte[] bytes;
+
+		EncodedUserInfo(UUID uuid, String name) {
+			this.name = name;
+			this.bytes = Messages.UserInfo.newBuilder()
+					.setUuid(ProtobufUUID.convertJavaToProtobuf(uuid))
+					.setName(name)
+					.build()
+					.toByteArray();
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink;
+
+import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
+import com.foxelbox.foxbukkit.chatlink.json.MessageTarget;
+import com.foxelbox.foxbukkit.chatlink.util.MessageTemplate;
+
+import java.util.UUID;
+
+/**
+ * Snapshot of a ChatMessageOut as it was when queued, encoded later by the sender thread.
+ * Commands are free to change and resend the original afterwards.
+ *
+ * Arrays are shared with the original, nothing in the tree writes into them after assigning them.
+ */
+class OutboundMessage {
+	final long id;
+	final long timestamp;
+	final String server;
+	final UUID fromUUID;
+	final String fromName;
+	final Messages.TargetType toType;
+	final String[] toFilter;
+	final UUID[] toPlayers;
+	// toPlayers as filter strings, for servers that don't read binary targets
+	final String[] toPlayerStrings;
+	final UUID context;
+	final boolean finalizeContext;
+	final Messages.MessageType type;
+	final String contents;
+	final MessageTemplate template;
+	final String[] templateArgs;
+	/**
+	 * The only server that needs this message, or null if it goes to all of them
+	 */
+	final String route;
+
+	OutboundMessage(ChatMessageOut message) {
+		// Fail here, in the sender's thread, like building the protobuf used to
+		if(message.context == null)
+			throw new NullPointerException("context");
+		if(message.from != null && (message.from.uuid == null || message.from.name == null))
+			throw new NullPointerException("from");
+		if(message.to != null && message.to.type != Messages.TargetType.ALL) {
+			checkEntries(message.to.filter, "to.filter");
+			checkEntries(message.to.players, "to.players");
+		}
+		checkEntries(message.getTemplateArgs(), "templateArgs");
+
+		this.id = message.id;
+		this.timestamp = message.timestamp;
+		this.server = message.server;
+		this.fromUUID = (message.from != null) ? message.from.uuid : null;
+		this.fromName = (message.from != null) ? message.from.name : null;
+		if(message.to != null && message.to.type != Messages.TargetType.ALL) {
+			this.toType = message.to.type;
+			this.toFilter = message.to.filter;
+			this.toPlayers = message.to.players;
+		} else {
+			this.toType = Messages.TargetType.ALL;
+			this.toFilter = null;
+			this.toPlayers = null;
+		}
+		if(this.toPlayers != null) {
+			this.toPlayerStrings = new String[this.toPlayers.length];
+			for(int i = 0; i < this.toPlayers.length; i++)
+				this.toPlayerStrings[i] = this.toPlayers[i].toString();
+		} else {
+			this.toPlayerStrings = null;
+		}
+		this.context = message.context;
+		this.finalizeContext = message.finalizeContext;
+		this.type = message.type;
+		this.contents = message.contents;
+		this.template = message.getTemplate();
+		this.templateArgs = message.getTemplateArgs();
+		this.route = (message.route != null) ? message.route : getRoute(message.to);
+	}
+
+	private static void checkEntries(Object[] array, String name) {
+		if(array == null)
+			return;
+		for(Object entry : array)
+			if(entry == null)
+				throw new NullPointerException(name);
+	}
+
+	private static String getRoute(MessageTarget to) {
+		if(to == null)
+			return null;
+
+		switch(to.type) {
+			case SERVER:
+				return (to.filter != null && to.filter.length == 1) ? to.filter[0] : null;
+			default:
+				// PLAYER targets stay broadcast: OnlinePlayerIndex lags behind server switches
+				return null;
+		}
+	}
+}
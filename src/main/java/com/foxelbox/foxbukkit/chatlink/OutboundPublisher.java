@@ -0,0 +1,302 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink;
+
+import com.foxelbox.foxbukkit.chatlink.util.LinkStats;
+import com.foxelbox.foxbukkit.chatlink.util.MessageTemplate;
+import com.google.protobuf.CodedOutputStream;
+import org.zeromq.ZMQ;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes encoded ChatMessageOut frames to the XPUB socket. Only used from the sender thread.
+ *
+ * Servers that subscribe to "CMB" get ChatMessageOutBatch envelopes, servers that still subscribe to "CMO"
+ * keep getting one frame per message. Servers subscribing to "CTM" get envelopes in which messages rendered
+ * from a registered template carry its ID and arguments instead of contents, and the template table on "CTT"
+ * whenever one of them subscribes. "CTU" is the same as "CTM", except that PLAYER targets carry binary UUIDs in
+ * MessageTarget.players, everywhere else they are UUID strings in the filter. The subscriptions the socket reports
+ * are our capability flags.
+ *
+ * Every frame's topic is "FAMILY:*" for broadcasts or "FAMILY:server:" for messages that only one server needs,
+ * so servers can subscribe to just those two. Subscribing to the bare family still gets everything.
+ */
+class OutboundPublisher {
+	private static final byte[] CTT = "CTT".getBytes(StandardCharsets.UTF_8);
+
+	private final TopicFamily legacyTopics = new TopicFamily("CMO");
+	private final TopicFamily batchTopics = new TopicFamily("CMB");
+	private final TopicFamily templateTopics = new TopicFamily("CTM");
+	private final TopicFamily binaryTargetTopics = new TopicFamily("CTU");
+
+	// Field 1 (messages), length delimited
+	private static final int BATCH_MESSAGE_TAG = (Messages.ChatMessageOutBatch.MESSAGES_FIELD_NUMBER << 3) | 2;
+
+	private final ZMQ.Socket socket;
+	private final int maxBatchBytes;
+
+	private final Set<String> subscriptions = new HashSet<>();
+	private volatile boolean legacySubscribed = false;
+	private volatile boolean batchSubscribed = false;
+	private volatile boolean templateSubscribed = false;
+	private volatile boolean binaryTargetSubscribed = false;
+
+	private final OutboundEncoder encoder;
+	private int[] templatedSlots = new int[64];
+	private int[] binaryTargetSlots = new int[64];
+
+	private byte[] batchBuffer = new byte[4096];
+
+	private final AtomicLong legacyFrames = LinkStats.counter("outbound.frames.legacy");
+	private final AtomicLong batchFrames = LinkStats.counter("outbound.frames.batch");
+	private final AtomicLong batchedMessages = LinkStats.counter("outbound.batch.messages");
+	private final AtomicLong templateFrames = LinkStats.counter("outbound.frames.template");
+	private final AtomicLong binaryTargetFrames = LinkStats.counter("outbound.frames.binary_targets");
+	private final AtomicLong templateTables = LinkStats.counter("outbound.template_tables");
+	private final AtomicLong routedMessages = LinkStats.counter("outbound.messages.routed");
+
+	OutboundPublisher(ZMQ.Socket socket, int maxBatchBytes, int userInfoCacheSize) {
+		this.socket = socket;
+		this.maxBatchBytes = maxBatchBytes;
+		this.encoder = new OutboundEncoder(userInfoCacheSize);
+
+		LinkStats.gauge("outbound.subscribed.legacy", new LinkStats.Gauge() {
+			@Override
+			public long get() {
+				return legacySubscribed ? 1 : 0;
+			}
+		});
+		LinkStats.gauge("outbound.subscribed.batch", new LinkStats.Gauge() {
+			@Override
+			public long get() {
+				return batchSubscribed ? 1 : 0;
+			}
+		});
+		LinkStats.gauge("outbound.subscribed.template", new LinkStats.Gauge() {
+			@Override
+			public long get() {
+				return templateSubscribed ? 1 : 0;
+			}
+		});
+		LinkStats.gauge("outbound.subscribed.binary_targets", new LinkStats.Gauge() {
+			@Override
+			public long get() {
+				return binaryTargetSubscribed ? 1 : 0;
+			}
+		});
+	}
+
+	void publish(List<OutboundMessage> messages) {
+		readSubscriptions();
+
+		if(!legacySubscribed && !batchSubscribed && !templateSubscribed && !binaryTargetSubscribed)
+			return;
+
+		// Slot i holds the rendered form of message i, other forms only get their own slot if they differ
+		encoder.clear();
+		for(OutboundMessage message : messages)
+			encoder.encode(message, false, false);
+		if(templateSubscribed) {
+			if(templatedSlots.length < messages.size())
+				templatedSlots = new int[Math.max(messages.size(), templatedSlots.length * 2)];
+			for(int i = 0; i < messages.size(); i++) {
+				final OutboundMessage message = messages.get(i);
+				templatedSlots[i] = (message.template != null) ? encoder.encode(message, true, false) : i;
+			}
+		}
+		if(binaryTargetSubscribed) {
+			if(binaryTargetSlots.length < messages.size())
+				binaryTargetSlots = new int[Math.max(messages.size(), binaryTargetSlots.length * 2)];
+			for(int i = 0; i < messages.size(); i++) {
+				final OutboundMessage message = messages.get(i);
+				binaryTargetSlots[i] = (message.template != null || message.toPlayers != null) ? encoder.encode(message, true, true) : i;
+			}
+		}
+
+		if(legacySubscribed) {
+			final byte[] encoded = encoder.getBuffer();
+			for(int i = 0; i < messages.size(); i++) {
+				socket.send(legacyTopics.get(messages.get(i).route), ZMQ.SNDMORE);
+				socket.send(encoded, encoder.getOffset(i), encoder.getLength(i), 0);
+			}
+			legacyFrames.addAndGet(messages.size());
+		}
+
+		if(batchSubscribed)
+			batchFrames.addAndGet(publishRoutes(batchTopics, messages, null));
+
+		if(templateSubscribed)
+			templateFrames.addAndGet(publishRoutes(templateTopics, messages, templatedSlots));
+
+		if(binaryTargetSubscribed)
+			binaryTargetFrames.addAndGet(publishRoutes(binaryTargetTopics, messages, binaryTargetSlots));
+
+		for(OutboundMessage message : messages)
+			if(message.route != null)
+				routedMessages.incrementAndGet();
+	}
+
+	/**
+	 * Batches consecutive messages with the same route, so nobody sees their messages reordered
+	 *
+	 * @param slots the encoder slot of each message, or null for the rendered forms
+	 */
+	private int publishRoutes(TopicFamily topics, List<OutboundMessage> messages, int[] slots) {
+		int frames = 0;
+		int start = 0;
+		while(start < messages.size()) {
+			final String route = messages.get(start).route;
+			int end = start + 1;
+			while(end < messages.size() && Objects.equals(route, messages.get(end).route))
+				end++;
+			frames += publishBatches(topics.get(route), start, end, slots);
+			start = end;
+		}
+		return frames;
+	}
+
+	private int publishBatches(byte[] topic, int from, int to, int[] slots) {
+		final byte[] encoded = encoder.getBuffer();
+		int frames = 0;
+		int start = from;
+		while(start < to) {
+			int size = 0;
+			int end = start;
+			while(end < to) {
+				final int entrySize = entrySize(encoder.getLength((slots != null) ? slots[end] : end));
+				// A single oversized message still goes out, on its own
+				if(end > start && size + entrySize > maxBatchBytes)
+					break;
+				size += entrySize;
+				end++;
+			}
+
+			if(batchBuffer.length < size)
+				batchBuffer = new byte[Math.max(size, batchBuffer.length * 2)];
+
+			final CodedOutputStream out = CodedOutputStream.newInstance(batchBuffer);
+			try {
+				for(int i = start; i < end; i++) {
+					final int slot = (slots != null) ? slots[i] : i;
+					final int length = encoder.getLength(slot);
+					out.writeRawVarint32(BATCH_MESSAGE_TAG);
+					out.writeRawVarint32(length);
+					out.writeRawBytes(encoded, encoder.getOffset(slot), length);
+				}
+			} catch (IOException e) {
+				// Can't happen, the buffer was sized for the batch
+				throw new IllegalStateException(e);
+			}
+
+			socket.send(topic, ZMQ.SNDMORE);
+			socket.send(batchBuffer, 0, size, 0);
+			frames++;
+			batchedMessages.addAndGet(end - start);
+
+			start = end;
+		}
+		return frames;
+	}
+
+	private void publishTemplateTable() {
+		final Messages.MessageTemplateTable.Builder table = Messages.MessageTemplateTable.newBuilder();
+		for(MessageTemplate template : MessageTemplate.getRegistered()) {
+			table.addTemplates(Messages.MessageTemplateDefinition.newBuilder()
+					.setId(template.getId())
+					.setFormat(template.getPattern()));
+		}
+		socket.send(CTT, ZMQ.SNDMORE);
+		socket.send(table.build().toByteArray(), 0);
+		templateTables.incrementAndGet();
+	}
+
+	private static int entrySize(int length) {
+		return CodedOutputStream.computeRawVarint32Size(BATCH_MESSAGE_TAG)
+				+ CodedOutputStream.computeRawVarint32Size(length)
+				+ length;
+	}
+
+	private void readSubscriptions() {
+		boolean changed = false;
+		boolean tableRequested = false;
+		byte[] subscription;
+		while((subscription = socket.recv(ZMQ.DONTWAIT)) != null) {
+			if(subscription.length < 1)
+				continue;
+			final String topic = new String(subscription, 1, subscription.length - 1, StandardCharsets.UTF_8);
+			if(subscription[0] == 1) {
+				subscriptions.add(topic);
+				// The socket is verbose, so every server subscribing gets the table, not just the first
+				if("CTT".startsWith(topic))
+					tableRequested = true;
+			} else if(subscription[0] == 0) {
+				subscriptions.remove(topic);
+			}
+			changed = true;
+		}
+
+		if(changed) {
+			legacySubscribed = isSubscribed(legacyTopics.name);
+			batchSubscribed = isSubscribed(batchTopics.name);
+			templateSubscribed = isSubscribed(templateTopics.name);
+			binaryTargetSubscribed = isSubscribed(binaryTargetTopics.name);
+		}
+
+		// Before any templated message goes out
+		if(tableRequested)
+			publishTemplateTable();
+	}
+
+	private boolean isSubscribed(String family) {
+		for(String subscription : subscriptions)
+			if(family.startsWith(subscription) || subscription.startsWith(family))
+				return true;
+		return false;
+	}
+
+	private static class TopicFamily {
+		final String name;
+		private final byte[] broadcast;
+		private final Map<String, byte[]> servers = new HashMap<>();
+
+		TopicFamily(String name) {
+			this.name = name;
+			this.broadcast = (name + ":*").getBytes(StandardCharsets.UTF_8);
+		}
+
+		byte[] get(String server) {
+			if(server == null)
+				return broadcast;
+			byte[] topic = servers.get(server);
+			if(topic == null) {
+				// Trailing separator, so "lobby" doesn't also get "lobby2"
+				topic = (name + ":" + server + ":").getBytes(StandardCharsets.UTF_8);
+				servers.put(server, topic);
+			}
+			return topic;
+		}
+	}
+}
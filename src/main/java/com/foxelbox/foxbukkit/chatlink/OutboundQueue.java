@@ -0,0 +1,177 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink;
+
+import com.foxelbox.foxbukkit.chatlink.util.LinkStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded FIFO for outbound messages that sheds by ChatMessageOut.importance once full.
+ *
+ * A full queue first evicts the oldest queued message of the lowest importance below the new one.
+ * Every importance has its own FIFO and live count for that, so finding the victim never scans the queue.
+ * Messages at or above the protected importance (opchat, PMs, conversations) may overflow the
+ * capacity by the protected reserve, everything else is dropped.
+ */
+public class OutboundQueue<T> {
+	public static final int MAX_IMPORTANCE = 4;
+
+	private static class Entry<T> {
+		@SuppressWarnings("rawtypes")
+		private static final AtomicIntegerFieldUpdater<Entry> CLAIMED = AtomicIntegerFieldUpdater.newUpdater(Entry.class, "claimed");
+
+		private T data;
+		private final int importance;
+		private volatile int claimed = 0;
+
+		Entry(T data, int importance) {
+			this.data = data;
+			this.importance = importance;
+		}
+
+		boolean claim() {
+			return CLAIMED.compareAndSet(this, 0, 1);
+		}
+	}
+
+	private final int capacity;
+	private final int protectedImportance;
+	private final int protectedLimit;
+
+	private final LinkedTransferQueue<Entry<T>> queue = new LinkedTransferQueue<>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final List<Entry<T>> drainBuffer = new ArrayList<>();
+
+	// Same entries as queue, by importance. Claimed entries are removed lazily
+	@SuppressWarnings("unchecked")
+	private final ConcurrentLinkedQueue<Entry<T>>[] byImportance = new ConcurrentLinkedQueue[MAX_IMPORTANCE + 1];
+	private final AtomicInteger[] live = new AtomicInteger[MAX_IMPORTANCE + 1];
+
+	private final AtomicLong[] dropped = new AtomicLong[MAX_IMPORTANCE + 1];
+	private final AtomicLong droppedTotal = LinkStats.counter("outbound.dropped");
+	private final AtomicLong evicted = LinkStats.counter("outbound.evicted");
+	private final AtomicLong overflowed = LinkStats.counter("outbound.overflowed");
+
+	public OutboundQueue(int capacity, int protectedImportance, int protectedReserve) {
+		this.capacity = capacity;
+		this.protectedImportance = protectedImportance;
+		this.protectedLimit = capacity + protectedReserve;
+
+		for(int i = 0; i <= MAX_IMPORTANCE; i++) {
+			dropped[i] = LinkStats.counter("outbound.dropped.importance" + i);
+			byImportance[i] = new ConcurrentLinkedQueue<>();
+			live[i] = new AtomicInteger();
+		}
+
+		LinkStats.gauge("outbound.depth", new LinkStats.Gauge() {
+			@Override
+			public long get() {
+				return size.get();
+			}
+		});
+	}
+
+	public boolean offer(T data, int importance) {
+		importance = Math.max(0, Math.min(MAX_IMPORTANCE, importance));
+		final Entry<T> entry = new Entry<>(data, importance);
+
+		final int newSize = size.incrementAndGet();
+		if(newSize <= capacity || evictBelow(importance)) {
+			enqueue(entry);
+			return true;
+		}
+
+		if(importance >= protectedImportance && newSize <= protectedLimit) {
+			overflowed.incrementAndGet();
+			enqueue(entry);
+			return true;
+		}
+
+		size.decrementAndGet();
+		countDrop(importance);
+		return false;
+	}
+
+	private void enqueue(Entry<T> entry) {
+		byImportance[entry.importance].offer(entry);
+		live[entry.importance].incrementAndGet();
+		queue.offer(entry);
+	}
+
+	private boolean evictBelow(int importance) {
+		for(int i = 0; i < importance; i++) {
+			if(live[i].get() == 0)
+				continue;
+
+			// Oldest first, skipping whatever the sender or another evictor already claimed
+			Entry<T> victim;
+			while((victim = byImportance[i].poll()) != null) {
+				if(!victim.claim())
+					continue;
+
+				live[i].decrementAndGet();
+				victim.data = null;
+				size.decrementAndGet();
+				evicted.incrementAndGet();
+				countDrop(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void countDrop(int importance) {
+		dropped[importance].incrementAndGet();
+		droppedTotal.incrementAndGet();
+	}
+
+	/**
+	 * Moves everything currently queued into out, oldest first. Only to be called from the sender thread.
+	 */
+	public int drainTo(List<T> out) {
+		queue.drainTo(drainBuffer);
+		int count = 0;
+		for(Entry<T> entry : drainBuffer) {
+			if(!entry.claim())
+				continue;
+			live[entry.importance].decrementAndGet();
+			size.decrementAndGet();
+			out.add(entry.data);
+			count++;
+		}
+		drainBuffer.clear();
+
+		// What was just sent sits at the heads of the importance FIFOs
+		for(ConcurrentLinkedQueue<Entry<T>> entries : byImportance) {
+			Entry<T> head;
+			while((head = entries.peek()) != null && head.claimed != 0)
+				entries.remove(head);
+		}
+		return count;
+	}
+
+	public boolean isEmpty() {
+		return queue.isEmpty();
+	}
+}
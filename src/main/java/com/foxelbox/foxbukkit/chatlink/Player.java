@@ -18,8 +18,11 @@
 
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
+import com.foxelbox.foxbukkit.chatlink.json.MessageTarget;
 import com.foxelbox.foxbukkit.chatlink.json.UserInfo;
 import com.foxelbox.foxbukkit.chatlink.permissions.FoxBukkitPermissionHandler;
+import com.foxelbox.foxbukkit.chatlink.util.MessageHelper;
+import com.foxelbox.foxbukkit.chatlink.util.OnlinePlayerIndex;
 import com.foxelbox.foxbukkit.chatlink.util.PlayerHelper;
 
 import java.util.UUID;
@@ -80,8 +83,7 @@ public void kick(String reason, boolean force) {
         ChatMessageOut messageOut = new ChatMessageOut(null, new UserInfo(uuid, name));
         messageOut.contents = "[Kicked] " + reason;
         messageOut.type = Messages.MessageType.KICK;
-        messageOut.to.type = Messages.TargetType.PLAYER;
-        messageOut.to.filter = new String[] { uuid.toString() };
+        messageOut.to = new MessageTarget(uuid);
         Main.chatQueueHandler.sendMessage(messageOut);
         showKickMessage(reason, force);
     }
@@ -90,17 +92,18 @@ public void chat(String message) {
         ChatMessageOut messageOut = new ChatMessageOut(null, new UserInfo(uuid, name));
         messageOut.contents = message;
         messageOut.type = Messages.MessageType.INJECT;
-        messageOut.to.type = Messages.TargetType.PLAYER;
-        messageOut.to.filter = new String[] { uuid.toString() };
+        messageOut.to = new MessageTarget(uuid);
         Main.chatQueueHandler.sendMessage(messageOut);
     }
 
     public void showKickMessage(String reason, boolean force) {
         if (isOnline() || force) {
             ChatMessageOut messageOut = new ChatMessageOut(null, new UserInfo(uuid, name));
-            messageOut.setContents(ChatQueueHandler.KICK_FORMAT, new String[]{
-                    name, uuid.toString(), PlayerHelper.getFullPlayerName(uuid, name), reason
-            });
+            messageOut.setRenderedContents(
+                    ChatQueueHandler.KICK_TEMPLATE,
+                    MessageHelper.renderPlayerArgs(
+                            name, uuid, PlayerHelper.getFullPlayerName(uuid, name), reason
+                    ));
             Main.chatQueueHandler.sendMessage(messageOut);
         }
     }
@@ -114,7 +117,7 @@ public int getLevel() {
     }
 
     public boolean isOnline() {
-        return PlayerHelper.getOnlinePlayersOnAllServers().contains(this);
+        return OnlinePlayerIndex.instance.isOnline(uuid);
     }
 
     @Override
@@ -36,9 +36,11 @@
 import com.foxelbox.foxbukkit.chatlink.Main;
 import com.foxelbox.foxbukkit.chatlink.Messages;
 import com.foxelbox.foxbukkit.chatlink.Player;
+import com.foxelbox.foxbukkit.chatlink.commands.system.CommandSystem;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
+import com.foxelbox.foxbukkit.chatlink.util.CommandException;
 import com.foxelbox.foxbukkit.chatlink.util.PlayerHelper;
 
 import java.util.UUID;
@@ -65,8 +67,8 @@ public String getName() {
 		}
 	}
 
-	public void unban(final ChatMessageIn refMessage, final Player from, final String ply) {
-		new Thread() {
+	public void unban(final ChatMessageIn refMessage, final Player from, final String ply) throws CommandException {
+		CommandSystem.instance.runAsync("unban", refMessage, new Runnable() {
 			public void run() {
 				Ban ban = BanResolver.getBan(ply, null, false);
 				ChatMessageOut reply = ICommand.makeReply(refMessage);
@@ -81,25 +83,25 @@ public void run() {
 				reply.finalizeContext = true;
 				Main.chatQueueHandler.sendMessage(reply);
 			}
-		}.start();
+		});
 	}
 
-	public void ban(final ChatMessageIn refMessage, final Player from, final Player ply, final String reason, final BanType type) {
+	public void ban(final ChatMessageIn refMessage, final Player from, final Player ply, final String reason, final BanType type) throws CommandException {
 		if (type == BanType.TEMPORARY) return;
 		ban(refMessage, from, ply, reason, type, 0, "");
 	}
 
-    public void ban(final ChatMessageIn refMessage, final Player from, final Player ply, final String reason, final BanType type, final long duration, final String measure) {
+    public void ban(final ChatMessageIn refMessage, final Player from, final Player ply, final String reason, final BanType type, final long duration, final String measure) throws CommandException {
         if (type == BanType.TEMPORARY) return;
         ban(refMessage, from, ply.getName(), ply.getUniqueId(), reason, type, duration, measure);
     }
 
-	public void ban(final ChatMessageIn refMessage, final Player from, final String plyName, final UUID plyUUID, final String reason, final BanType type) {
+	public void ban(final ChatMessageIn refMessage, final Player from, final String plyName, final UUID plyUUID, final String reason, final BanType type) throws CommandException {
 		if (type == BanType.TEMPORARY) return;
 		ban(refMessage, from, plyName, plyUUID, reason, type, 0, "");
 	}
 
-	public void ban(final ChatMessageIn refMessage, final Player from, final String _plyName, final UUID plyUUID, final String reason, final BanType type, final long duration, final String measure) {
+	public void ban(final ChatMessageIn refMessage, final Player from, final String _plyName, final UUID plyUUID, final String reason, final BanType type, final long duration, final String measure) throws CommandException {
 		if (type == null) return;
 		if (type == BanType.TEMPORARY) return;
 
@@ -109,7 +111,7 @@ public void ban(final ChatMessageIn refMessage, final Player from, final String
 		else
 			plyName = _plyName;
 
-		new Thread() {
+		CommandSystem.instance.runAsync("ban", refMessage, new Runnable() {
 			public void run() {
 				Ban newBan = new Ban();
 				newBan.setPlayer(plyName, plyUUID);
@@ -124,6 +126,6 @@ public void run() {
 				messageOut.setContentsPlain("\u00a75[FBCL]\u00a7f " + from.getName() + " banned " + plyName + " [Reason: " + reason + "]!");
 				Main.chatQueueHandler.sendMessage(messageOut);
 			}
-		}.start();
+		});
 	}
 }
\ No newline at end of file
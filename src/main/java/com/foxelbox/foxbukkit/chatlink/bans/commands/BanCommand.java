@@ -18,13 +18,14 @@
 
 import com.foxelbox.foxbukkit.chatlink.Player;
 import com.foxelbox.foxbukkit.chatlink.bans.Bans;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
+import com.foxelbox.foxbukkit.chatlink.commands.system.CommandArguments;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
 import com.foxelbox.foxbukkit.chatlink.util.CommandException;
 import com.foxelbox.foxbukkit.chatlink.util.PermissionDeniedException;
 import com.foxelbox.foxbukkit.chatlink.util.PlayerHelper;
-import com.foxelbox.foxbukkit.chatlink.util.Utils;
 
 @ICommand.Names("ban")
 @ICommand.Help(
@@ -41,9 +42,9 @@
 @ICommand.Permission("foxbukkit.bans.ban")
 public class BanCommand extends ICommand {
 	@Override
-	public ChatMessageOut run(Player sender, ChatMessageIn messageIn, String formattedName, String[] args) throws CommandException {
-		args = parseFlags(args);
-		executeBan(messageIn, sender, args[0], Utils.concatArray(" ", args, 1, null), booleanFlags.contains('r'), booleanFlags.contains('g'), stringFlags.get('t'));
+	public ChatMessageOut run(Player sender, ChatMessageIn messageIn, String formattedName, CommandArguments arguments) throws CommandException {
+		final ArgumentView args = arguments.getArgs();
+		executeBan(messageIn, sender, args.get(0), args.rest(1, null), arguments.hasFlag('r'), arguments.hasFlag('g'), arguments.getStringFlag('t'));
 		return null;
 	}
 
@@ -20,7 +20,9 @@
 import com.foxelbox.foxbukkit.chatlink.Player;
 import com.foxelbox.foxbukkit.chatlink.bans.BanResolver;
 import com.foxelbox.foxbukkit.chatlink.bans.LogEntry;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ReplyStream;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
 import com.foxelbox.foxbukkit.chatlink.util.CommandException;
@@ -44,6 +46,7 @@
 @ICommand.Help("Gets IP info")
 @ICommand.Usage("<name>")
 @ICommand.Permission("foxbukkit.bans.ipinfo")
+@ICommand.AsyncLimit(2)
 public class IPInfoCommand extends ICommand {
     static final String SHODAN_API_KEY = Main.configuration.getValue("shodan-api-key", "");
 
@@ -54,26 +57,25 @@ private static void sendError(ChatMessageIn messageIn) {
         Main.chatQueueHandler.sendMessage(reply);
     }
 
-    private static void pushQueue(ChatMessageOut reply, HashMap<String,String> ipInfo) {
+    private static void pushQueue(ReplyStream reply, HashMap<String,String> ipInfo) {
         for(Map.Entry<String, String> e : ipInfo.entrySet()) {
-            reply.setContentsPlain("\u00a75[FBCL]\u00a7f " + e.getKey() + ": " + e.getValue());
-            Main.chatQueueHandler.sendMessage(reply);
+            reply.line("\u00a75[FBCL]\u00a7f " + e.getKey() + ": " + e.getValue());
         }
         ipInfo.clear();
     }
 
     @Override
-    public ChatMessageOut run(final Player commandSender, final ChatMessageIn messageIn, String formattedName, String[] args) throws CommandException {
+    public ChatMessageOut run(final Player commandSender, final ChatMessageIn messageIn, String formattedName, ArgumentView args) throws CommandException {
         final String ip; final Player target;
-        if(args[0].equalsIgnoreCase("[IP]")) {
+        if(args.get(0).equalsIgnoreCase("[IP]")) {
             target = null;
-            ip = args[1];
+            ip = args.get(1);
         } else {
-            target = PlayerHelper.matchPlayerSingle(args[0], false);
+            target = PlayerHelper.matchPlayerSingle(args.get(0), false);
             ip = null;
         }
 
-        new Thread() {
+        runAsync(messageIn, new Runnable() {
             public void run() {
                 final HashMap<String,String> ipInfo = new HashMap<>();
 
@@ -104,44 +106,42 @@ public void run() {
                     return;
                 }
 
-                ChatMessageOut reply = makeReply(messageIn);
-                reply.finalizeContext = false;
-                reply.setContentsPlain("\u00a7d[FBCL]\u00a7f --- START ---");
-                Main.chatQueueHandler.sendMessage(reply);
+                try (ReplyStream reply = openReplyStream(messageIn)) {
+                    reply.line("\u00a7d[FBCL]\u00a7f --- START ---");
 
-                final String ip = ipAddress.getHostAddress();
-                final String host = ipAddress.getCanonicalHostName();
+                    final String ip = ipAddress.getHostAddress();
+                    final String host = ipAddress.getCanonicalHostName();
 
-                ipInfo.put("IP", ip);
-                ipInfo.put("Host", host);
+                    ipInfo.put("IP", ip);
+                    ipInfo.put("Host", host);
 
-                pushQueue(reply, ipInfo);
+                    pushQueue(reply, ipInfo);
+                    reply.flush();
 
-                try {
-                    URLConnection conn = new URL("https://api.shodan.io/shodan/host/" + ip + "?minify=True&key=" + SHODAN_API_KEY).openConnection();
-                    InputStream is = conn.getInputStream();
-                    JSONParser parser = new JSONParser();
-                    JSONObject obj = (JSONObject)parser.parse(new InputStreamReader(is));
+                    try {
+                        URLConnection conn = new URL("https://api.shodan.io/shodan/host/" + ip + "?minify=True&key=" + SHODAN_API_KEY).openConnection();
+                        InputStream is = conn.getInputStream();
+                        JSONParser parser = new JSONParser();
+                        JSONObject obj = (JSONObject)parser.parse(new InputStreamReader(is));
 
-                    ipInfo.put("Location", obj.get("country_name") + " (" + obj.get("city") + ")");
-                    ipInfo.put("OS", "" + obj.get("os"));
+                        ipInfo.put("Location", obj.get("country_name") + " (" + obj.get("city") + ")");
+                        ipInfo.put("OS", "" + obj.get("os"));
 
-                    ipInfo.put("Open ports", ((JSONArray)obj.get("ports")).toJSONString());
+                        ipInfo.put("Open ports", ((JSONArray)obj.get("ports")).toJSONString());
 
-                    ipInfo.put("Shodan", "https://www.shodan.io/host/" + ip);
+                        ipInfo.put("Shodan", "https://www.shodan.io/host/" + ip);
 
-                    is.close();
-                } catch (IOException|ParseException|RuntimeException e) {
-                    e.printStackTrace();
-                }
+                        is.close();
+                    } catch (IOException|ParseException|RuntimeException e) {
+                        e.printStackTrace();
+                    }
 
-                pushQueue(reply, ipInfo);
+                    pushQueue(reply, ipInfo);
 
-                reply.finalizeContext = true;
-                reply.setContentsPlain("\u00a7d[FBCL]\u00a7f ---- END ----");
-                Main.chatQueueHandler.sendMessage(reply);
+                    reply.line("\u00a7d[FBCL]\u00a7f ---- END ----");
+                }
             }
-        }.start();
+        });
 
         return null;
     }
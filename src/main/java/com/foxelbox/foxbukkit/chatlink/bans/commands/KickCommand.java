@@ -18,13 +18,13 @@
 
 import com.foxelbox.foxbukkit.chatlink.Messages;
 import com.foxelbox.foxbukkit.chatlink.Player;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
 import com.foxelbox.foxbukkit.chatlink.util.CommandException;
 import com.foxelbox.foxbukkit.chatlink.util.PermissionDeniedException;
 import com.foxelbox.foxbukkit.chatlink.util.PlayerHelper;
-import com.foxelbox.foxbukkit.chatlink.util.Utils;
 
 @ICommand.Names("kick")
 @ICommand.Help("Kicks the specified user")
@@ -32,14 +32,14 @@
 @ICommand.Permission("foxbukkit.bans.kick")
 public class KickCommand extends ICommand {
     @Override
-    public ChatMessageOut run(Player commandSender, ChatMessageIn messageIn, String formattedName, String[] args) throws CommandException {
-        final Player otherPly = PlayerHelper.matchPlayerSingle(args[0], false);
+    public ChatMessageOut run(Player commandSender, ChatMessageIn messageIn, String formattedName, ArgumentView args) throws CommandException {
+        final Player otherPly = PlayerHelper.matchPlayerSingle(args.get(0), false);
 
         if (commandSender.getLevel() <= otherPly.getLevel()) {
             throw new PermissionDeniedException();
         }
 
-        otherPly.kick("[" + messageIn.from.name + "] " + Utils.concatArray(" ", args, 1, ""));
+        otherPly.kick("[" + messageIn.from.name + "] " + args.rest(1, ""));
 
         ChatMessageOut reply = makeReply(messageIn);
         reply.to.type = Messages.TargetType.ALL;
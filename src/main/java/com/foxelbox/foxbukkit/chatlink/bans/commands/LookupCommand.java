@@ -17,12 +17,13 @@
 package com.foxelbox.foxbukkit.chatlink.bans.commands;
 
 import com.foxelbox.foxbukkit.chatlink.ChatQueueHandler;
-import com.foxelbox.foxbukkit.chatlink.Main;
 import com.foxelbox.foxbukkit.chatlink.Player;
 import com.foxelbox.foxbukkit.chatlink.bans.Ban;
 import com.foxelbox.foxbukkit.chatlink.bans.BanResolver;
 import com.foxelbox.foxbukkit.chatlink.bans.FishBansResolver;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ReplyStream;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
 import com.foxelbox.foxbukkit.chatlink.util.CommandException;
@@ -36,32 +37,32 @@
 @ICommand.Help("Gets ban and alt information about specified user")
 @ICommand.Usage("<name>")
 @ICommand.Permission("foxbukkit.bans.lookup")
+@ICommand.AsyncLimit(2)
 public class LookupCommand extends ICommand {
 	@Override
-	public ChatMessageOut run(final Player commandSender, final ChatMessageIn messageIn, String formattedName, String[] args) throws CommandException {
-		final Player otherPly = PlayerHelper.matchPlayerSingle(args[0], false);
+	public ChatMessageOut run(final Player commandSender, final ChatMessageIn messageIn, String formattedName, ArgumentView args) throws CommandException {
+		final Player otherPly = PlayerHelper.matchPlayerSingle(args.get(0), false);
 
 		final String user = otherPly.getName();
 		final UUID uuid = otherPly.getUniqueId() != null ? otherPly.getUniqueId() : null;
-		new Thread() {
+		runAsync(messageIn, new Runnable() {
 			public void run() {
-				ChatMessageOut messageOut = makeReply(messageIn);
+				final ReplyStream reply = openReplyStream(messageIn);
 
 				final Ban ban = BanResolver.getBan(user, uuid);
 				if (ban != null) {
-					messageOut.setContentsPlain(String.format("\u00a75[FBCL]\u00a7f Player %1$s IS banned by %2$s for the reason of \"%3$s\"", user, ban.getAdmin().name, ban.getReason()));
+					reply.line(String.format("\u00a75[FBCL]\u00a7f Player %1$s IS banned by %2$s for the reason of \"%3$s\"", user, ban.getAdmin().name, ban.getReason()));
 				} else {
-					messageOut.setContentsPlain(String.format("\u00a75[FBCL]\u00a7f Player %1$s is NOT banned", user));
+					reply.line(String.format("\u00a75[FBCL]\u00a7f Player %1$s is NOT banned", user));
 				}
-				Main.chatQueueHandler.sendMessage(messageOut);
 
 				final String altList = BanResolver.makePossibleAltString(user, uuid, false);
 				if (altList != null) {
-					messageOut.setContentsPlain("\u00a75[FBCL]\u00a7f " + altList);
+					reply.line("\u00a75[FBCL]\u00a7f " + altList);
 				} else {
-					messageOut.setContentsPlain(String.format("\u00a75[FBCL]\u00a7f No possible alts of %1$s found", user));
+					reply.line(String.format("\u00a75[FBCL]\u00a7f No possible alts of %1$s found", user));
 				}
-				Main.chatQueueHandler.sendMessage(messageOut);
+				reply.flush();
 
 				final HashMap<String, Integer> fishBans = FishBansResolver.getBanCounts(user);
 				final StringBuilder fishBansStr = new StringBuilder("\u00a75[FBCL]\u00a7f ").append(user).append(" has");
@@ -71,11 +72,10 @@ public void run() {
 					}
 				}
 				fishBansStr.deleteCharAt(fishBansStr.length() - 1);
-				messageOut.setContentsPlain(fishBansStr.toString());
-				messageOut.finalizeContext = true;
-				Main.chatQueueHandler.sendMessage(messageOut);
+				reply.line(fishBansStr.toString());
+				reply.close();
 			}
-		}.start();
+		});
 
 		return null;
 	}
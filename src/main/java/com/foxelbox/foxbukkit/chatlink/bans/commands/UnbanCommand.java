@@ -18,6 +18,7 @@
 
 import com.foxelbox.foxbukkit.chatlink.Player;
 import com.foxelbox.foxbukkit.chatlink.bans.Bans;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
@@ -29,8 +30,8 @@
 @ICommand.Permission("foxbukkit.bans.unban")
 public class UnbanCommand extends ICommand {
 	@Override
-	public ChatMessageOut run(Player commandSender, ChatMessageIn messageIn, String formattedName, String[] args) throws CommandException {
-		Bans.instance.unban(messageIn, commandSender, args[0]);
+	public ChatMessageOut run(Player commandSender, ChatMessageIn messageIn, String formattedName, ArgumentView args) throws CommandException {
+		Bans.instance.unban(messageIn, commandSender, args.get(0));
 		return makeBlank(messageIn);
 	}
 }
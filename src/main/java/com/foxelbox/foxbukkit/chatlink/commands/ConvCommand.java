@@ -18,18 +18,20 @@
 
 import com.foxelbox.foxbukkit.chatlink.ChatQueueHandler;
 import com.foxelbox.foxbukkit.chatlink.Main;
-import com.foxelbox.foxbukkit.chatlink.Messages;
 import com.foxelbox.foxbukkit.chatlink.Player;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
 import com.foxelbox.foxbukkit.chatlink.json.MessageTarget;
 import com.foxelbox.foxbukkit.chatlink.util.CommandException;
+import com.foxelbox.foxbukkit.chatlink.util.MessageHelper;
+import com.foxelbox.foxbukkit.chatlink.util.MessageTemplate;
 import com.foxelbox.foxbukkit.chatlink.util.PlayerHelper;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 @ICommand.Names({"conv", "conversation"})
 @ICommand.Help("Opens or closes a conversation with the given player. This means that all your chat is going to them until you close the conversation by running the command without parameters.")
@@ -38,9 +40,11 @@
 @ICommand.NoLogging
 public class ConvCommand extends ICommand {
     private static final String CONV_FORMAT = "<color name=\"yellow\">[CONV]</color> " + ChatQueueHandler.MESSAGE_FORMAT;
+    private static final MessageTemplate CONV_TEMPLATE = MessageTemplate.register(CONV_FORMAT);
     private static final String CONV_EMOTE_FORMAT = "<color name=\"yellow\">[CONV]</color> " + MeCommand.EMOTE_FORMAT;
+    private static final MessageTemplate CONV_EMOTE_TEMPLATE = MessageTemplate.register(CONV_EMOTE_FORMAT);
 
-    private static final Map<UUID, UUID> conversationMap = new HashMap<>();
+    private static final Map<UUID, UUID> conversationMap = new ConcurrentHashMap<>();
 
     public static boolean handleConvMessage(ChatMessageIn messageIn, String formattedName, String messageText, boolean isEmote) {
         UUID targetUUID = conversationMap.get(messageIn.from.uuid);
@@ -60,22 +64,20 @@ public static boolean handleConvMessage(ChatMessageIn messageIn, String formatte
         ChatMessageOut message = new ChatMessageOut(messageIn);
 
         if(isEmote) {
-            message.setContents(
-                    CONV_EMOTE_FORMAT,
-                    new String[]{
-                            message.from.name, message.from.uuid.toString(), formattedName, messageText
-                    }
-            );
+            message.setRenderedContents(
+                    CONV_EMOTE_TEMPLATE,
+                    MessageHelper.renderPlayerArgs(
+                            message.from.name, message.from.uuid, formattedName, messageText
+                    ));
         } else {
-            message.setContents(
-                    CONV_FORMAT,
-                    new String[]{
-                            message.from.name, message.from.uuid.toString(), formattedName, messageText
-                    }
-            );
+            message.setRenderedContents(
+                    CONV_TEMPLATE,
+                    MessageHelper.renderPlayerArgs(
+                            message.from.name, message.from.uuid, formattedName, messageText
+                    ));
         }
         message.importance = 4;
-        message.to = new MessageTarget(Messages.TargetType.PLAYER, new String[] { target.getUniqueId().toString(), message.from.uuid.toString() });
+        message.to = new MessageTarget(target.getUniqueId(), message.from.uuid);
 		message.finalizeContext = true;
         Main.chatQueueHandler.sendMessage(message);
 
@@ -83,10 +85,10 @@ public static boolean handleConvMessage(ChatMessageIn messageIn, String formatte
     }
 
     @Override
-    public ChatMessageOut run(Player sender, ChatMessageIn messageIn, String formattedName, String[] args) throws CommandException {
+    public ChatMessageOut run(Player sender, ChatMessageIn messageIn, String formattedName, ArgumentView args) throws CommandException {
         ChatMessageOut message = makeReply(messageIn);
-        if(args.length > 0) {
-            Player target = PlayerHelper.matchPlayerSingle(args[0]);
+        if(args.size() > 0) {
+            Player target = PlayerHelper.matchPlayerSingle(args.get(0));
             conversationMap.put(messageIn.from.uuid, target.getUniqueId());
             message.setContentsPlain("\u00a75[FBCL] \u00a7fStarted conversation with " + target.getName());
         } else {
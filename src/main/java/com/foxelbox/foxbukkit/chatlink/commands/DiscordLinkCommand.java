@@ -18,6 +18,7 @@
 
 import com.foxelbox.foxbukkit.chatlink.Main;
 import com.foxelbox.foxbukkit.chatlink.Player;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
@@ -31,12 +32,12 @@
 @ICommand.Permission("foxbukkit.discordlink")
 public class DiscordLinkCommand extends ICommand {
     @Override
-    public ChatMessageOut run(Player commandSender, ChatMessageIn messageIn, String formattedName, String[] args) throws CommandException {
-        if(args.length != 1) {
+    public ChatMessageOut run(Player commandSender, ChatMessageIn messageIn, String formattedName, ArgumentView args) throws CommandException {
+        if(args.size() != 1) {
             throw new CommandException("Invalid discord link code parameters");
         }
 
-        final String redisKey = "discordlink:key:" + args[0];
+        final String redisKey = "discordlink:key:" + args.get(0);
         final String discordId = Main.redisManager.get(redisKey);
         if(discordId == null || discordId.length() < 1) {
             throw new CommandException("Invalid discord link code");
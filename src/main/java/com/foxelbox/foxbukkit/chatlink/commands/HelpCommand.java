@@ -16,11 +16,12 @@
  */
 package com.foxelbox.foxbukkit.chatlink.commands;
 
-import com.foxelbox.foxbukkit.chatlink.ChatQueueHandler;
-import com.foxelbox.foxbukkit.chatlink.Main;
 import com.foxelbox.foxbukkit.chatlink.Player;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
+import com.foxelbox.foxbukkit.chatlink.commands.system.CommandDescriptor;
 import com.foxelbox.foxbukkit.chatlink.commands.system.CommandSystem;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ReplyStream;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
 import com.foxelbox.foxbukkit.chatlink.util.CommandException;
@@ -34,31 +35,32 @@
 @ICommand.Permission("foxbukkit.help")
 public class HelpCommand extends ICommand {
     @Override
-    public ChatMessageOut run(Player commandSender, ChatMessageIn messageIn, String formattedName, String[] args) throws CommandException {
-        Map<String, ICommand> commands = CommandSystem.instance.getCommands();
+    public ChatMessageOut run(Player commandSender, ChatMessageIn messageIn, String formattedName, ArgumentView args) throws CommandException {
+        Map<String, CommandDescriptor> commands = CommandSystem.instance.getCommands();
 
-        ChatMessageOut message = makeReply(messageIn);
-
-        if(args.length > 0) {
-            ICommand val = commands.get(args[0]);
+        if(args.size() > 0) {
+            CommandDescriptor val = commands.get(args.get(0));
             if (val == null || !val.canPlayerUseCommand(commandSender)) {
                 throw new CommandException("No help for that command available!");
             }
 
-            for (String line : val.getHelp().split("\n")) {
-                message.setContentsPlain("\u00a75[FBCL]\u00a7f " + line);
-                Main.chatQueueHandler.sendMessage(message);
+            try (ReplyStream reply = openReplyStream(messageIn)) {
+                for (String line : val.getHelp().split("\n")) {
+                    reply.line("\u00a75[FBCL]\u00a7f " + line);
+                }
+                reply.line("\u00a75[FBCL]\u00a7f Usage: /" + args.get(0) + " " + val.getUsage());
             }
-            message.setContentsPlain("\u00a75[FBCL]\u00a7f Usage: /" + args[0] + " " + val.getUsage());
-            return message;
+            return null;
         }
         else {
+            ChatMessageOut message = makeReply(messageIn);
+
             String ret = "Available commands: /";
             for (String key : new PriorityQueue<>(commands.keySet())) {
                 if (key.equals("\u00a7"))
                     continue;
 
-                ICommand val = commands.get(key);
+                CommandDescriptor val = commands.get(key);
                 if (!val.canPlayerUseCommand(commandSender))
                     continue;
 
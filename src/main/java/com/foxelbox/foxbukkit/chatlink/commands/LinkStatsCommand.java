@@ -0,0 +1,48 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink.commands;
+
+import com.foxelbox.foxbukkit.chatlink.Player;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ReplyStream;
+import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
+import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
+import com.foxelbox.foxbukkit.chatlink.util.CommandException;
+import com.foxelbox.foxbukkit.chatlink.util.LinkStats;
+
+import java.util.Map;
+
+@ICommand.Names("linkstats")
+@ICommand.Help("Prints the chat link performance counters, optionally only those starting with the given prefix.")
+@ICommand.Usage("[<prefix>]")
+@ICommand.Permission("foxbukkit.linkstats")
+public class LinkStatsCommand extends ICommand {
+    @Override
+    public ChatMessageOut run(Player commandSender, ChatMessageIn messageIn, String formattedName, ArgumentView args) throws CommandException {
+        final String prefix = (args.size() > 0) ? args.get(0) : "";
+
+        try (ReplyStream reply = openReplyStream(messageIn)) {
+            for(Map.Entry<String, Long> stat : LinkStats.snapshot().entrySet()) {
+                if(stat.getKey().startsWith(prefix))
+                    reply.line("\u00a75[FBCL]\u00a7f " + stat.getKey() + ": " + stat.getValue());
+            }
+        }
+
+        return null;
+    }
+}
@@ -16,14 +16,16 @@
  */
 package com.foxelbox.foxbukkit.chatlink.commands;
 
-import com.foxelbox.foxbukkit.chatlink.Main;
 import com.foxelbox.foxbukkit.chatlink.Player;
 import com.foxelbox.foxbukkit.chatlink.bans.BanResolver;
 import com.foxelbox.foxbukkit.chatlink.bans.LogEntry;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ReplyStream;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
 import com.foxelbox.foxbukkit.chatlink.util.CommandException;
+import com.foxelbox.foxbukkit.chatlink.util.MessageTemplate;
 import com.foxelbox.foxbukkit.chatlink.util.PlayerHelper;
 import com.foxelbox.foxbukkit.chatlink.util.Utils;
 
@@ -39,74 +41,80 @@
 @ICommand.Permission("foxbukkit.who")
 public class ListCommand extends ICommand {
 	private static final String LIST_FORMAT = "<color name=\"dark_purple\">[FBCL]</color> <color name=\"dark_gray\">[%1$s]</color> %2$s";
+	private static final MessageTemplate LIST_TEMPLATE = MessageTemplate.register(LIST_FORMAT);
 
 	private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss");
 
 	@Override
-	public ChatMessageOut run(final Player commandSender, final ChatMessageIn messageIn, String formattedName, String[] args) throws CommandException {
-		if(args.length > 0) {
-			final Player target = PlayerHelper.matchPlayerSingle(args[0], false);
-
-			ChatMessageOut reply = makeReply(messageIn);
-
-			reply.setContentsPlain("\u00a75[FBCL]\u00a7f Name: " + target.getName());
-			Main.chatQueueHandler.sendMessage(reply);
-
-			reply.setContentsPlain("\u00a75[FBCL]\u00a7f Rank: " + PlayerHelper.getPlayerRank(target.getUniqueId()));
-			Main.chatQueueHandler.sendMessage(reply);
-
-			reply.setContentsPlain("\u00a75[FBCL]\u00a7f NameTag: " + PlayerHelper.getFullPlayerName(target.getUniqueId(), target.getName()));
-
-			if(commandSender.hasPermission("foxbukkit.who.logdetails")) {
-				Main.chatQueueHandler.sendMessage(reply);
-				new Thread() {
-					public void run() {
-						ChatMessageOut reply = makeReply(messageIn);
-						LogEntry logEntryLogout = BanResolver.getLatestEntry(target.getName(), target.getUniqueId(), "logout", messageIn.server);
-						LogEntry logEntry = BanResolver.getLatestEntry(target.getName(), target.getUniqueId(), null, messageIn.server);
-
-						if(logEntryLogout == null) {
-							reply.setContentsPlain("\u00a75[FBCL]\u00a7f Last logout data not present");
-						} else {
-							reply.setContentsPlain("\u00a75[FBCL]\u00a7f Last logout: " + DATE_FORMAT.format(logEntryLogout.getTime()));
-						}
-						Main.chatQueueHandler.sendMessage(reply);
-
-						if(logEntry == null) {
-							reply.setContentsPlain("\u00a75[FBCL]\u00a7f IP data not present");
-						} else {
-							reply.setContentsPlain("\u00a75[FBCL]\u00a7f Last IP: " + logEntry.getIp().getHostAddress());
+	public ChatMessageOut run(final Player commandSender, final ChatMessageIn messageIn, String formattedName, ArgumentView args) throws CommandException {
+		if(args.size() > 0) {
+			final Player target = PlayerHelper.matchPlayerSingle(args.get(0), false);
+
+			final ReplyStream reply = openReplyStream(messageIn);
+			// Once the async task has the stream, closing it is up to the task
+			boolean handedOff = false;
+			try {
+				reply.line("\u00a75[FBCL]\u00a7f Name: " + target.getName());
+				reply.line("\u00a75[FBCL]\u00a7f Rank: " + PlayerHelper.getPlayerRank(target.getUniqueId()));
+				reply.line("\u00a75[FBCL]\u00a7f NameTag: " + PlayerHelper.getFullPlayerName(target.getUniqueId(), target.getName()));
+
+				if(commandSender.hasPermission("foxbukkit.who.logdetails")) {
+					reply.flush();
+					runAsync(messageIn, new Runnable() {
+						public void run() {
+							try {
+								LogEntry logEntryLogout = BanResolver.getLatestEntry(target.getName(), target.getUniqueId(), "logout", messageIn.server);
+								LogEntry logEntry = BanResolver.getLatestEntry(target.getName(), target.getUniqueId(), null, messageIn.server);
+
+								if(logEntryLogout == null) {
+									reply.line("\u00a75[FBCL]\u00a7f Last logout data not present");
+								} else {
+									final String logoutTime;
+									synchronized (DATE_FORMAT) {
+										logoutTime = DATE_FORMAT.format(logEntryLogout.getTime());
+									}
+									reply.line("\u00a75[FBCL]\u00a7f Last logout: " + logoutTime);
+								}
+
+								if(logEntry == null) {
+									reply.line("\u00a75[FBCL]\u00a7f IP data not present");
+								} else {
+									reply.line("\u00a75[FBCL]\u00a7f Last IP: " + logEntry.getIp().getHostAddress());
+								}
+							} finally {
+								reply.close();
+							}
 						}
-						reply.finalizeContext = true;
-						Main.chatQueueHandler.sendMessage(reply);
-					}
-				}.start();
-				return null;
+					});
+					handedOff = true;
+				}
+			} finally {
+				if(!handedOff)
+					reply.close();
 			}
-
-			return reply;
+			return null;
 		}
 
-		ChatMessageOut message = makeReply(messageIn);
-		for(String server : PlayerHelper.getAllServers()) {
-			List<Player> players = PlayerHelper.getOnlinePlayersOnServer(server);
-			String listText;
-			if(players.isEmpty()) {
-				listText = "\u00a7fEmpty";
-			} else {
-				final List<String> names = new LinkedList<>();
-				for(Player ply : PlayerHelper.getOnlinePlayersOnServer(server)) {
-					names.add(PlayerHelper.getPlayerRankTagRaw(ply.getUniqueId()) + ply.getName());
-				}
-				Collections.sort(names, new NameComparator());
+		try (ReplyStream reply = openReplyStream(messageIn)) {
+			for(String server : PlayerHelper.getAllServers()) {
+				List<Player> players = PlayerHelper.getOnlinePlayersOnServer(server);
+				String listText;
+				if(players.isEmpty()) {
+					listText = "\u00a7fEmpty";
+				} else {
+					final List<String> names = new LinkedList<>();
+					for(Player ply : players) {
+						names.add(PlayerHelper.getPlayerRankTagRaw(ply.getUniqueId()) + ply.getName());
+					}
+					Collections.sort(names, new NameComparator());
 
-				listText = Utils.joinList(names, "\u00a7f, ");
+					listText = Utils.joinList(names, "\u00a7f, ");
+				}
+				reply.line(LIST_TEMPLATE, server, listText);
 			}
-			message.setContents(LIST_FORMAT, new String[]{server, listText});
-			Main.chatQueueHandler.sendMessage(message);
 		}
 
-		return makeBlank(messageIn);
+		return null;
 	}
 
 	private static class NameComparator implements Comparator<String> {
@@ -19,6 +19,7 @@
 import com.foxelbox.foxbukkit.chatlink.ChatQueueHandler;
 import com.foxelbox.foxbukkit.chatlink.Main;
 import com.foxelbox.foxbukkit.chatlink.Player;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
@@ -34,11 +35,12 @@
 @ICommand.Help("Allows you to link your Minecraft account to your forums account")
 @ICommand.Usage("")
 @ICommand.Permission("foxbukkit.mclink")
+@ICommand.AsyncLimit(2)
 public class MCLinkCommand extends ICommand {
     @Override
-    public ChatMessageOut run(Player commandSender, final ChatMessageIn messageIn, String formattedName, String argStr) throws CommandException {
+    public ChatMessageOut run(Player commandSender, final ChatMessageIn messageIn, String formattedName, ArgumentView args) throws CommandException {
         final ChatMessageOut message = makeReply(messageIn);
-        new Thread() {
+        runAsync(messageIn, new Runnable() {
             public void run() {
                 try {
                     URL url = new URL(Main.configuration.getValue("mclink-url", "http://foxelbox.com/mclink_int.php?scode=SOMECODE&uuid=") + Utils.URLEncode(messageIn.from.uuid.toString()));
@@ -58,7 +60,7 @@ public void run() {
                     Main.chatQueueHandler.sendMessage(makeError(messageIn, "Please try again later"));
                 }
             }
-        }.start();
+        });
         return null;
     }
 }
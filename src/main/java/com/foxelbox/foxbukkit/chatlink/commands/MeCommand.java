@@ -18,10 +18,13 @@
 
 import com.foxelbox.foxbukkit.chatlink.ChatQueueHandler;
 import com.foxelbox.foxbukkit.chatlink.Player;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
 import com.foxelbox.foxbukkit.chatlink.filter.MuteList;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
+import com.foxelbox.foxbukkit.chatlink.util.MessageHelper;
+import com.foxelbox.foxbukkit.chatlink.util.MessageTemplate;
 
 @ICommand.Names("me")
 @ICommand.Help("Well, it's /me, durp")
@@ -29,9 +32,12 @@
 @ICommand.Permission("foxbukkit.communication.emote")
 public class MeCommand extends ICommand {
     public static final String EMOTE_FORMAT = "* " + ChatQueueHandler.PLAYER_FORMAT + " <color name=\"gray\">%4$s</color>";
+    public static final MessageTemplate EMOTE_TEMPLATE = MessageTemplate.register(EMOTE_FORMAT);
 
     @Override
-    public ChatMessageOut run(Player sender, ChatMessageIn messageIn, String formattedName, String argStr) {
+    public ChatMessageOut run(Player sender, ChatMessageIn messageIn, String formattedName, ArgumentView args) {
+        final String argStr = args.rest(0, "");
+
         if(MuteList.isMuted(sender)) {
             return null;
         }
@@ -42,11 +48,11 @@ public ChatMessageOut run(Player sender, ChatMessageIn messageIn, String formatt
 
         final ChatMessageOut message = new ChatMessageOut(messageIn);
 
-        message.setContents(
-                EMOTE_FORMAT,
-                new String[] {
-                        messageIn.from.name, messageIn.from.uuid.toString(), formattedName, argStr
-                });
+        message.setRenderedContents(
+                EMOTE_TEMPLATE,
+                MessageHelper.renderPlayerArgs(
+                        messageIn.from.name, messageIn.from.uuid, formattedName, argStr
+                ));
         return message;
     }
 }
@@ -19,11 +19,14 @@
 import com.foxelbox.foxbukkit.chatlink.ChatQueueHandler;
 import com.foxelbox.foxbukkit.chatlink.Messages;
 import com.foxelbox.foxbukkit.chatlink.Player;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
 import com.foxelbox.foxbukkit.chatlink.filter.MuteList;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
 import com.foxelbox.foxbukkit.chatlink.util.CommandException;
+import com.foxelbox.foxbukkit.chatlink.util.MessageHelper;
+import com.foxelbox.foxbukkit.chatlink.util.MessageTemplate;
 
 @ICommand.Names({"opchat"})
 @ICommand.Help("Sends message to op chat.")
@@ -31,19 +34,22 @@
 @ICommand.Permission("foxbukkit.opchat")
 public class OpChatCommand extends ICommand {
     private static final String OPCHAT_FORMAT = "<color name=\"yellow\">[#OP]</color> " + ChatQueueHandler.MESSAGE_FORMAT;
+    private static final MessageTemplate OPCHAT_TEMPLATE = MessageTemplate.register(OPCHAT_FORMAT);
 
     @Override
-    public ChatMessageOut run(Player sender, ChatMessageIn messageIn, String formattedName, String argStr) throws CommandException {
+    public ChatMessageOut run(Player sender, ChatMessageIn messageIn, String formattedName, ArgumentView args) throws CommandException {
+        final String argStr = args.rest(0, "");
+
         if(MuteList.isMuted(sender)) {
             return null;
         }
 
         final ChatMessageOut message = new ChatMessageOut(messageIn);
-        message.setContents(
-                OPCHAT_FORMAT,
-                new String[] {
-                        messageIn.from.name, message.from.uuid.toString(), formattedName, argStr
-                });
+        message.setRenderedContents(
+                OPCHAT_TEMPLATE,
+                MessageHelper.renderPlayerArgs(
+                        messageIn.from.name, message.from.uuid, formattedName, argStr
+                ));
         message.to.type = Messages.TargetType.PERMISSION;
         message.importance = 3;
         message.to.filter = new String[] { "foxbukkit.opchat" };
@@ -18,16 +18,17 @@
 
 import com.foxelbox.foxbukkit.chatlink.ChatQueueHandler;
 import com.foxelbox.foxbukkit.chatlink.Main;
-import com.foxelbox.foxbukkit.chatlink.Messages;
 import com.foxelbox.foxbukkit.chatlink.Player;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
 import com.foxelbox.foxbukkit.chatlink.filter.MuteList;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
 import com.foxelbox.foxbukkit.chatlink.json.MessageTarget;
 import com.foxelbox.foxbukkit.chatlink.util.CommandException;
+import com.foxelbox.foxbukkit.chatlink.util.MessageHelper;
+import com.foxelbox.foxbukkit.chatlink.util.MessageTemplate;
 import com.foxelbox.foxbukkit.chatlink.util.PlayerHelper;
-import com.foxelbox.foxbukkit.chatlink.util.Utils;
 
 @ICommand.Names({"pm", "msg", "tell"})
 @ICommand.Help("Sends a private message to the specified user, that cannot be seen by anyone but the target and yourself.")
@@ -36,36 +37,38 @@
 @ICommand.NoLogging
 public class PMCommand extends ICommand {
     private static final String PM_SEND_FORMAT = "<color name=\"yellow\">[PM &gt;]</color> " + ChatQueueHandler.MESSAGE_FORMAT;
+    private static final MessageTemplate PM_SEND_TEMPLATE = MessageTemplate.register(PM_SEND_FORMAT);
     private static final String PM_RECEIVE_FORMAT = "<color name=\"yellow\">[PM &lt;]</color> " + ChatQueueHandler.MESSAGE_FORMAT;
+    private static final MessageTemplate PM_RECEIVE_TEMPLATE = MessageTemplate.register(PM_RECEIVE_FORMAT);
 
     @Override
-    public ChatMessageOut run(Player commandSender, ChatMessageIn messageIn, String formattedName, String[] args) throws CommandException {
+    public ChatMessageOut run(Player commandSender, ChatMessageIn messageIn, String formattedName, ArgumentView args) throws CommandException {
         if(MuteList.isMuted(commandSender)) {
             return null;
         }
 
-        final String messageText = Utils.concatArray(" ", args, 1, "");
-        final Player target = PlayerHelper.matchPlayerSingle(args[0]);
+        final String messageText = args.rest(1, "");
+        final Player target = PlayerHelper.matchPlayerSingle(args.get(0));
 
         ChatMessageOut message = new ChatMessageOut(messageIn);
 
-        message.setContents(
-                PM_RECEIVE_FORMAT,
-                new String[] {
-                        messageIn.from.name, message.from.uuid.toString(), formattedName, messageText
-                });
-        message.to = new MessageTarget(Messages.TargetType.PLAYER, new String[] { target.getUniqueId().toString() });
+        message.setRenderedContents(
+                PM_RECEIVE_TEMPLATE,
+                MessageHelper.renderPlayerArgs(
+                        messageIn.from.name, message.from.uuid, formattedName, messageText
+                ));
+        message.to = new MessageTarget(target.getUniqueId());
         message.importance = 4;
         Main.chatQueueHandler.sendMessage(message);
 
         formattedName = PlayerHelper.getFullPlayerName(target.getUniqueId(), target.getName());
 
 		message = makeReply(messageIn);
-        message.setContents(
-                PM_SEND_FORMAT,
-                new String[] {
-                        target.getName(), target.getUniqueId().toString(), formattedName, messageText
-                });
+        message.setRenderedContents(
+                PM_SEND_TEMPLATE,
+                MessageHelper.renderPlayerArgs(
+                        target.getName(), target.getUniqueId(), formattedName, messageText
+                ));
         message.importance = 4;
         return message;
     }
@@ -18,10 +18,13 @@
 
 import com.foxelbox.foxbukkit.chatlink.ChatQueueHandler;
 import com.foxelbox.foxbukkit.chatlink.Player;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
 import com.foxelbox.foxbukkit.chatlink.util.CommandException;
+import com.foxelbox.foxbukkit.chatlink.util.MessageHelper;
+import com.foxelbox.foxbukkit.chatlink.util.MessageTemplate;
 
 @ICommand.Names({"staffnotice"})
 @ICommand.Help("Sends a highlighted staff message to all users")
@@ -29,15 +32,18 @@
 @ICommand.Permission("foxbukkit.staffnotice")
 public class StaffNoticeCommand extends ICommand {
     private static final String OPCHAT_FORMAT = "<color name=\"red\">[#!STAFF]</color> " + ChatQueueHandler.MESSAGE_FORMAT;
+    private static final MessageTemplate OPCHAT_TEMPLATE = MessageTemplate.register(OPCHAT_FORMAT);
 
     @Override
-    public ChatMessageOut run(Player sender, ChatMessageIn messageIn, String formattedName, String argStr) throws CommandException {
+    public ChatMessageOut run(Player sender, ChatMessageIn messageIn, String formattedName, ArgumentView args) throws CommandException {
+        final String argStr = args.rest(0, "");
+
         final ChatMessageOut message = new ChatMessageOut(messageIn);
-        message.setContents(
-                OPCHAT_FORMAT,
-                new String[] {
-                        messageIn.from.name, message.from.uuid.toString(), formattedName, argStr
-                });
+        message.setRenderedContents(
+                OPCHAT_TEMPLATE,
+                MessageHelper.renderPlayerArgs(
+                        messageIn.from.name, message.from.uuid, formattedName, argStr
+                ));
         message.importance = 3;
         return message;
     }
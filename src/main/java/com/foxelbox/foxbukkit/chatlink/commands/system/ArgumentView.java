@@ -0,0 +1,159 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink.commands.system;
+
+/**
+ * The arguments of one command invocation, kept as ranges of the original message text.
+ * Strings are only cut out of the text when a command asks for one.
+ *
+ * Arguments are separated by single spaces, so consecutive spaces give empty arguments and
+ * rest() gives back the original text. An argument starting with a quote runs to the next quote
+ * that ends a word, spaces included, and keeps its quotes for PlayerHelper.matchPlayerSingle.
+ */
+public final class ArgumentView {
+	public static final ArgumentView EMPTY = new ArgumentView("", new int[0], 0, 0);
+
+	private final String text;
+	// Start and end of every argument, in pairs
+	private final int[] bounds;
+	private final int first;
+	private final int count;
+
+	ArgumentView(String text, int[] bounds, int first, int count) {
+		this.text = text;
+		this.bounds = bounds;
+		this.first = first;
+		this.count = count;
+	}
+
+	/**
+	 * Splits text[start, end) into arguments
+	 */
+	static ArgumentView tokenize(String text, int start, int end) {
+		if (start >= end)
+			return EMPTY;
+
+		int[] bounds = new int[8];
+		int count = 0;
+		int pos = start;
+		for (;;) {
+			int tokenEnd = -1;
+			if (text.charAt(pos) == '"') {
+				for (int quote = text.indexOf('"', pos + 1); quote >= 0 && quote < end; quote = text.indexOf('"', quote + 1)) {
+					if (quote + 1 == end || text.charAt(quote + 1) == ' ') {
+						tokenEnd = quote + 1;
+						break;
+					}
+				}
+			}
+			if (tokenEnd < 0) {
+				tokenEnd = text.indexOf(' ', pos);
+				if (tokenEnd < 0 || tokenEnd > end)
+					tokenEnd = end;
+			}
+
+			if (count * 2 == bounds.length) {
+				final int[] grown = new int[bounds.length * 2];
+				System.arraycopy(bounds, 0, grown, 0, bounds.length);
+				bounds = grown;
+			}
+			bounds[count * 2] = pos;
+			bounds[count * 2 + 1] = tokenEnd;
+			count++;
+
+			if (tokenEnd >= end)
+				break;
+			pos = tokenEnd + 1;
+			// Like split(" "), which drops trailing empty arguments
+			if (pos >= end)
+				break;
+		}
+
+		return new ArgumentView(text, bounds, 0, count);
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	public String get(int index) {
+		return text.substring(start(index), end(index));
+	}
+
+	public int length(int index) {
+		return end(index) - start(index);
+	}
+
+	public char charAt(int index, int position) {
+		if (position < 0 || position >= length(index))
+			throw new StringIndexOutOfBoundsException(position);
+		return text.charAt(start(index) + position);
+	}
+
+	public boolean is(int index, String value) {
+		return length(index) == value.length() && text.startsWith(value, start(index));
+	}
+
+	/**
+	 * The original text from the given argument on, or defaultText if there are no arguments past it
+	 */
+	public String rest(int from, String defaultText) {
+		if (from >= count)
+			return defaultText;
+		return text.substring(start(from), end(count - 1));
+	}
+
+	/**
+	 * The arguments from the given one on, without copying anything
+	 */
+	public ArgumentView from(int index) {
+		if (index >= count)
+			return EMPTY;
+		return new ArgumentView(text, bounds, first + index, count - index);
+	}
+
+	public String[] toArray() {
+		final String[] result = new String[count];
+		for (int i = 0; i < count; i++)
+			result[i] = get(i);
+		return result;
+	}
+
+	private int start(int index) {
+		checkIndex(index);
+		return bounds[(first + index) * 2];
+	}
+
+	private int end(int index) {
+		checkIndex(index);
+		return bounds[(first + index) * 2 + 1];
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= count)
+			throw new ArrayIndexOutOfBoundsException(index);
+	}
+
+	@Override
+	public String toString() {
+		return rest(0, "");
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink.commands.system;
+
+import gnu.trove.map.TCharObjectMap;
+import gnu.trove.map.hash.TCharObjectHashMap;
+import gnu.trove.set.TCharSet;
+import gnu.trove.set.hash.TCharHashSet;
+
+/**
+ * The flags and remaining arguments of one command invocation.
+ */
+public final class CommandArguments {
+	private ArgumentView args;
+
+	// Only allocated once a flag of that kind shows up
+	private TCharSet booleanFlags;
+	private TCharObjectMap<String> stringFlags;
+	private TCharObjectMap<Double> numericFlags;
+
+	CommandArguments() { }
+
+	/**
+	 * The arguments after the flags
+	 */
+	public ArgumentView getArgs() {
+		return args;
+	}
+
+	public boolean hasFlag(char flag) {
+		return booleanFlags != null && booleanFlags.contains(flag);
+	}
+
+	public String getStringFlag(char flag) {
+		return (stringFlags != null) ? stringFlags.get(flag) : null;
+	}
+
+	public Double getNumericFlag(char flag) {
+		return (numericFlags != null) ? numericFlags.get(flag) : null;
+	}
+
+	void setArgs(ArgumentView args) {
+		this.args = args;
+	}
+
+	void addBooleanFlag(char flag) {
+		if (booleanFlags == null)
+			booleanFlags = new TCharHashSet();
+		booleanFlags.add(flag);
+	}
+
+	void putStringFlag(char flag, String value) {
+		if (stringFlags == null)
+			stringFlags = new TCharObjectHashMap<>();
+		stringFlags.put(flag, value);
+	}
+
+	void putNumericFlag(char flag, Double value) {
+		if (numericFlags == null)
+			numericFlags = new TCharObjectHashMap<>();
+		numericFlags.put(flag, value);
+	}
+}
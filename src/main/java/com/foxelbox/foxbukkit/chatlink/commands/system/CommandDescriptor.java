@@ -0,0 +1,111 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink.commands.system;
+
+import com.foxelbox.foxbukkit.chatlink.Player;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything the annotations of a command say, resolved once when the command is created.
+ */
+public final class CommandDescriptor {
+	private final ICommand command;
+	private final List<String> names;
+	private final String help;
+	private final String usage;
+	private final String permission;
+	private final boolean logged;
+	private final int asyncLimit;
+	private final FlagGrammar flagGrammar;
+
+	CommandDescriptor(ICommand command) {
+		final Class<? extends ICommand> cls = command.getClass();
+		this.command = command;
+
+		final ICommand.Names namesAnnotation = cls.getAnnotation(ICommand.Names.class);
+		this.names = (namesAnnotation != null) ? Collections.unmodifiableList(Arrays.asList(namesAnnotation.value().clone())) : Collections.<String>emptyList();
+
+		final ICommand.Help helpAnnotation = cls.getAnnotation(ICommand.Help.class);
+		this.help = (helpAnnotation != null) ? helpAnnotation.value() : "";
+
+		final ICommand.Usage usageAnnotation = cls.getAnnotation(ICommand.Usage.class);
+		this.usage = (usageAnnotation != null) ? usageAnnotation.value() : "";
+
+		final ICommand.Permission permissionAnnotation = cls.getAnnotation(ICommand.Permission.class);
+		this.permission = (permissionAnnotation != null) ? permissionAnnotation.value() : null;
+
+		this.logged = !cls.isAnnotationPresent(ICommand.NoLogging.class);
+
+		final ICommand.AsyncLimit asyncLimitAnnotation = cls.getAnnotation(ICommand.AsyncLimit.class);
+		this.asyncLimit = (asyncLimitAnnotation != null) ? asyncLimitAnnotation.value() : -1;
+
+		this.flagGrammar = new FlagGrammar(cls);
+	}
+
+	public ICommand getCommand() {
+		return command;
+	}
+
+	/**
+	 * The first of the command's names, the one async work is accounted under
+	 */
+	public String getName() {
+		return names.isEmpty() ? "" : names.get(0);
+	}
+
+	public List<String> getNames() {
+		return names;
+	}
+
+	public String getHelp() {
+		return help;
+	}
+
+	public String getUsage() {
+		return usage;
+	}
+
+	public String getRequiredPermission() {
+		return permission;
+	}
+
+	public boolean canPlayerUseCommand(Player commandSender) {
+		return permission == null || commandSender.hasPermission(permission);
+	}
+
+	public boolean isLogged() {
+		return logged;
+	}
+
+	/**
+	 * @return the command's own limit on concurrent async work, or -1 for the default
+	 */
+	public int getAsyncLimit() {
+		return asyncLimit;
+	}
+
+	public boolean usesFlags() {
+		return !flagGrammar.isEmpty();
+	}
+
+	FlagGrammar getFlagGrammar() {
+		return flagGrammar;
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink.commands.system;
+
+/**
+ * A chat line that is a command: "/name args", or the "#!" and "#" shortcuts for /staffnotice and /opchat.
+ * Parsed in one pass, the arguments stay views into the original text.
+ */
+public final class CommandLine {
+	private final String name;
+	private final ArgumentView arguments;
+
+	private CommandLine(String name, ArgumentView arguments) {
+		this.name = name;
+		this.arguments = arguments;
+	}
+
+	/**
+	 * @return null if the message is just chat
+	 */
+	public static CommandLine parse(String message) {
+		final int length = message.length();
+		final String impliedName;
+		int start;
+		if (length > 1 && message.charAt(0) == '#' && message.charAt(1) == '!') {
+			impliedName = "staffnotice";
+			start = 2;
+		} else if (length > 0 && message.charAt(0) == '#') {
+			impliedName = "opchat";
+			start = 1;
+		} else if (length > 0 && message.charAt(0) == '/') {
+			impliedName = null;
+			start = 1;
+		} else {
+			return null;
+		}
+
+		// Same as trim()
+		int end = length;
+		while (start < end && message.charAt(start) <= ' ')
+			start++;
+		while (end > start && message.charAt(end - 1) <= ' ')
+			end--;
+
+		final String name;
+		if (impliedName != null) {
+			name = impliedName;
+		} else {
+			int nameEnd = message.indexOf(' ', start);
+			if (nameEnd < 0 || nameEnd > end)
+				nameEnd = end;
+			name = message.substring(start, nameEnd);
+			start = Math.min(nameEnd + 1, end);
+			while (start < end && message.charAt(start) <= ' ')
+				start++;
+		}
+
+		return new CommandLine(name, ArgumentView.tokenize(message, start, end));
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public ArgumentView getArguments() {
+		return arguments;
+	}
+}
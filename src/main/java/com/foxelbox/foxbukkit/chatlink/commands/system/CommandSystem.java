@@ -17,27 +17,63 @@
 package com.foxelbox.foxbukkit.chatlink.commands.system;
 
 import com.foxelbox.foxbukkit.chatlink.Main;
+import com.foxelbox.foxbukkit.chatlink.Messages;
 import com.foxelbox.foxbukkit.chatlink.Player;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
 import com.foxelbox.foxbukkit.chatlink.util.CommandException;
+import com.foxelbox.foxbukkit.chatlink.util.LinkStats;
 import com.foxelbox.foxbukkit.chatlink.util.PermissionDeniedException;
 import com.foxelbox.foxbukkit.chatlink.util.PlayerHelper;
 import com.foxelbox.foxbukkit.chatlink.util.Utils;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class CommandSystem {
-	private final Map<String,ICommand> commands = new HashMap<>();
+	// Copied on write, commands are only registered while scanning
+	private volatile Map<String,CommandDescriptor> commands = Collections.emptyMap();
+
+	private final ThreadPoolExecutor asyncExecutor;
+	private final int defaultAsyncLimit;
+	private final ConcurrentMap<String,Semaphore> asyncPermits = new ConcurrentHashMap<>();
 
     public static final CommandSystem instance = new CommandSystem();
 
-	private CommandSystem() { }
+	private CommandSystem() {
+		final int threads = Integer.parseInt(Main.configuration.getValue("command-io-threads", "8"));
+		asyncExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(Integer.parseInt(Main.configuration.getValue("command-io-queue", "64"))),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Command I/O %d").build());
+		asyncExecutor.allowCoreThreadTimeOut(true);
+		defaultAsyncLimit = Integer.parseInt(Main.configuration.getValue("command-async-limit", "4"));
+
+		LinkStats.gauge("command.async.queued", new LinkStats.Gauge() {
+			@Override
+			public long get() {
+				return asyncExecutor.getQueue().size();
+			}
+		});
+		LinkStats.gauge("command.async.active", new LinkStats.Gauge() {
+			@Override
+			public long get() {
+				return asyncExecutor.getActiveCount();
+			}
+		});
+	}
 
 	public void scanCommands() {
-		commands.clear();
+		commands = Collections.emptyMap();
 		scanCommands("com.foxelbox.foxbukkit.chatlink.commands");
 		scanCommands("com.foxelbox.foxbukkit.chatlink.permissions.commands");
 		scanCommands("com.foxelbox.foxbukkit.chatlink.bans.commands");
@@ -69,37 +105,61 @@ public void scanCommands(String packageName) {
 		}
 	}
 
-	public void registerCommand(String name, ICommand command) {
-		commands.put(name, command);
+	public synchronized void registerCommand(String name, ICommand command) {
+		final Map<String,CommandDescriptor> updated = new HashMap<>(commands);
+		updated.put(name, command.getDescriptor());
+		commands = Collections.unmodifiableMap(updated);
 	}
 
-	public Map<String,ICommand> getCommands() {
+	public Map<String,CommandDescriptor> getCommands() {
 		return commands;
 	}
 
-	public ChatMessageOut runCommand(Player sender, ChatMessageIn message, String cmd, String argStr) {
-		if (commands.containsKey(cmd)) {
-            final Player player = Player.getPlayerFromMessage(message);
-			final String playerName = player.getName();
-			final ICommand icmd = commands.get(cmd);
+	/**
+	 * @param sender as made by Player.getPlayerFromMessage(message)
+	 */
+	public ChatMessageOut runCommand(Player sender, ChatMessageIn message, CommandLine commandLine) {
+		return routeToSender(message, executeCommand(sender, message, commandLine));
+	}
+
+	/**
+	 * A reply that goes out right away only needs the server the command came from, the sender is still on it.
+	 * Async replies stay broadcast, the sender may have switched servers by then.
+	 */
+	private static ChatMessageOut routeToSender(ChatMessageIn message, ChatMessageOut reply) {
+		if(reply == null || message.server == null || message.server.isEmpty() || reply.to == null)
+			return reply;
+		if(reply.to.type == Messages.TargetType.PLAYER && reply.to.filter == null
+				&& reply.to.players != null && reply.to.players.length == 1 && reply.to.players[0].equals(message.from.uuid))
+			reply.route = message.server;
+		return reply;
+	}
+
+	private ChatMessageOut executeCommand(Player sender, ChatMessageIn message, CommandLine commandLine) {
+		final String cmd = commandLine.getName();
+		final CommandDescriptor descriptor = commands.get(cmd);
+		if (descriptor != null) {
+			final String playerName = sender.getName();
+			final ICommand icmd = descriptor.getCommand();
 			try {
-				if(!icmd.canPlayerUseCommand(player))
+				if(!descriptor.canPlayerUseCommand(sender))
                     throw new PermissionDeniedException();
 
-				if(needsLogging(player, icmd)) {
-                    System.err.println("Command: " + playerName + ": "  + cmd + " " + argStr);
+				if(descriptor.isLogged()) {
+                    System.err.println("Command: " + playerName + ": "  + cmd + " " + commandLine.getArguments());
 				}
-				return icmd.run(sender, message, PlayerHelper.getFullPlayerName(message.from.uuid, message.from.name), argStr.trim());
+				final String formattedName = PlayerHelper.getFullPlayerName(message.from.uuid, message.from.name);
+				return icmd.run(sender, message, formattedName, commandLine.getArguments());
 			}
 			catch (PermissionDeniedException e) {
-				System.err.println("Command denied: " + playerName + ": "  + cmd + " " + argStr);
+				System.err.println("Command denied: " + playerName + ": "  + cmd + " " + commandLine.getArguments());
                 return ICommand.makeError(message, e.getMessage());
 			}
 			catch (CommandException e) {
                 return ICommand.makeError(message, e.getMessage());
 			}
 			catch (Exception e) {
-				if (player.hasPermission("foxbukkit.detailederrors")) {
+				if (sender.hasPermission("foxbukkit.detailederrors")) {
 					e.printStackTrace();
                     return ICommand.makeError(message, "Command error: "+e+" in "+e.getStackTrace()[0]);
 				}
@@ -111,11 +171,54 @@ public ChatMessageOut runCommand(Player sender, ChatMessageIn message, String cm
 		return ICommand.makeError(message, "Command not found!");
 	}
 
-	private boolean needsLogging(Player commandSender, ICommand command) {
-		final Class<? extends ICommand> cls = command.getClass();
-		if (cls.isAnnotationPresent(ICommand.NoLogging.class))
-			return false;
+	/**
+	 * Runs blocking work (JDBC, HTTP) for the given command on the shared I/O pool.
+	 * Throws a CommandException for the sender if the command is already at its concurrency limit or the pool is saturated.
+	 */
+	public void runAsync(final String commandName, final ChatMessageIn messageIn, final Runnable task) throws CommandException {
+		final Semaphore permits = getAsyncPermits(commandName);
+		if (!permits.tryAcquire()) {
+			LinkStats.counter("command." + commandName + ".async_rejected").incrementAndGet();
+			throw new CommandException("Too many /" + commandName + " requests are running, please try again later");
+		}
+
+		final long queuedAt = System.nanoTime();
+		try {
+			asyncExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					final long startedAt = System.nanoTime();
+					try {
+						task.run();
+					} catch (Exception e) {
+						e.printStackTrace();
+						final ChatMessageOut error = ICommand.makeError(messageIn, "Command error!");
+						error.finalizeContext = true;
+						Main.chatQueueHandler.sendMessage(error);
+					} finally {
+						permits.release();
+						final long doneAt = System.nanoTime();
+						LinkStats.counter("command." + commandName + ".async_runs").incrementAndGet();
+						LinkStats.counter("command." + commandName + ".async_wait_micros").addAndGet((startedAt - queuedAt) / 1000);
+						LinkStats.counter("command." + commandName + ".async_run_micros").addAndGet((doneAt - startedAt) / 1000);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			permits.release();
+			LinkStats.counter("command." + commandName + ".async_rejected").incrementAndGet();
+			throw new CommandException("The chat link is too busy right now, please try again later");
+		}
+	}
+
+	private Semaphore getAsyncPermits(String commandName) {
+		Semaphore permits = asyncPermits.get(commandName);
+		if (permits != null)
+			return permits;
 
-		return true;
+		final CommandDescriptor descriptor = commands.get(commandName);
+		permits = new Semaphore((descriptor != null && descriptor.getAsyncLimit() >= 0) ? descriptor.getAsyncLimit() : defaultAsyncLimit);
+		final Semaphore existing = asyncPermits.putIfAbsent(commandName, permits);
+		return (existing != null) ? existing : permits;
 	}
 }
@@ -0,0 +1,126 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink.commands.system;
+
+import com.foxelbox.foxbukkit.chatlink.util.CommandException;
+import gnu.trove.map.TCharObjectMap;
+import gnu.trove.map.hash.TCharObjectHashMap;
+
+/**
+ * The flags a command accepts, compiled from its flag annotations. Immutable once built, so one
+ * instance parses every invocation of the command at the same time.
+ */
+final class FlagGrammar {
+	private final TCharObjectMap<ICommand.FlagType> flagTypes = new TCharObjectHashMap<>();
+
+	FlagGrammar(Class<? extends ICommand> cls) {
+		final ICommand.BooleanFlags booleanFlagsAnnotation = cls.getAnnotation(ICommand.BooleanFlags.class);
+		if (booleanFlagsAnnotation != null) {
+			add(booleanFlagsAnnotation.value(), ICommand.FlagType.BOOLEAN);
+		}
+
+		final ICommand.StringFlags stringFlagsAnnotation = cls.getAnnotation(ICommand.StringFlags.class);
+		if (stringFlagsAnnotation != null) {
+			add(stringFlagsAnnotation.value(), ICommand.FlagType.STRING);
+		}
+
+		final ICommand.NumericFlags numericFlagsAnnotation = cls.getAnnotation(ICommand.NumericFlags.class);
+		if (numericFlagsAnnotation != null) {
+			add(numericFlagsAnnotation.value(), ICommand.FlagType.NUMERIC);
+		}
+	}
+
+	private void add(final String flags, final ICommand.FlagType flagType) {
+		for (int i = 0; i < flags.length(); ++i) {
+			flagTypes.put(flags.charAt(i), flagType);
+		}
+	}
+
+	boolean isEmpty() {
+		return flagTypes.isEmpty();
+	}
+
+	CommandArguments parse(ArgumentView args) throws CommandException {
+		final CommandArguments result = new CommandArguments();
+		int nextArg = 0;
+
+		while (nextArg < args.size()) {
+			// Fetch argument
+			final int arg = nextArg++;
+			final int argLength = args.length(arg);
+
+			// Empty argument? (multiple consecutive spaces)
+			if (argLength == 0)
+				continue;
+
+			// No more flags?
+			if (args.charAt(arg, 0) != '-' || argLength == 1) {
+				--nextArg;
+				break;
+			}
+
+			// Handle flag parsing terminator --
+			if (args.is(arg, "--"))
+				break;
+
+			if (!Character.isLetter(args.charAt(arg, 1))) {
+				--nextArg;
+				break;
+			}
+
+			// Go through the flags
+			for (int i = 1; i < argLength; ++i) {
+				char flagName = args.charAt(arg, i);
+
+				final ICommand.FlagType flagType = flagTypes.get(flagName);
+				if (flagType == null)
+					throw new CommandException("Invalid flag '"+flagName+"' specified.");
+
+				switch (flagType) {
+				case BOOLEAN:
+					result.addBooleanFlag(flagName);
+					break;
+
+				case STRING:
+					// Skip empty arguments...
+					while (nextArg < args.size() && args.length(nextArg) == 0)
+						++nextArg;
+
+					if (nextArg >= args.size())
+						throw new CommandException("No value specified for "+flagName+" flag.");
+
+					result.putStringFlag(flagName, args.get(nextArg++));
+					break;
+
+				case NUMERIC:
+					// Skip empty arguments...
+					while (nextArg < args.size() && args.length(nextArg) == 0)
+						++nextArg;
+
+					if (nextArg >= args.size())
+						throw new CommandException("No value specified for "+flagName+" flag.");
+
+					result.putNumericFlag(flagName, Double.parseDouble(args.get(nextArg++)));
+					break;
+				}
+			}
+		}
+
+		result.setArgs(args.from(nextArg));
+		return result;
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink.commands.system;
+
+import com.foxelbox.foxbukkit.chatlink.Main;
+import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
+import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
+import com.foxelbox.foxbukkit.chatlink.util.MessageTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the reply lines of one command and hands them to the queue in batches.
+ * The last line finalizes the context when the stream is closed, so commands don't have to track it.
+ * Not thread safe, a stream belongs to the command invocation that opened it.
+ */
+public class ReplyStream implements AutoCloseable {
+	private static final int BATCH_SIZE = 32;
+
+	private final ChatMessageIn messageIn;
+	private final List<ChatMessageOut> pending = new ArrayList<>();
+	private boolean closed = false;
+
+	ReplyStream(ChatMessageIn messageIn) {
+		this.messageIn = messageIn;
+	}
+
+	public ReplyStream add(ChatMessageOut message) {
+		if(closed)
+			throw new IllegalStateException("Reply stream already closed");
+
+		message.finalizeContext = false;
+		pending.add(message);
+
+		// Hold back the newest line so close() can still finalize it
+		if(pending.size() > BATCH_SIZE) {
+			final ChatMessageOut last = pending.remove(pending.size() - 1);
+			send();
+			pending.add(last);
+		}
+		return this;
+	}
+
+	public ReplyStream line(String plain) {
+		final ChatMessageOut message = ICommand.makeReply(messageIn);
+		message.setContentsPlain(plain);
+		return add(message);
+	}
+
+	public ReplyStream line(MessageTemplate format, String... args) {
+		final ChatMessageOut message = ICommand.makeReply(messageIn);
+		message.setContents(format, args);
+		return add(message);
+	}
+
+	/**
+	 * Sends everything collected so far, for commands that are about to block on I/O.
+	 */
+	public void flush() {
+		send();
+	}
+
+	@Override
+	public void close() {
+		if(closed)
+			return;
+		closed = true;
+
+		if(pending.isEmpty())
+			pending.add(ICommand.makeBlank(messageIn));
+		pending.get(pending.size() - 1).finalizeContext = true;
+		send();
+	}
+
+	private void send() {
+		if(pending.isEmpty())
+			return;
+		Main.chatQueueHandler.sendMessages(pending);
+		pending.clear();
+	}
+}
@@ -18,23 +18,23 @@
 
 import com.foxelbox.foxbukkit.chatlink.Player;
 
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MuteList {
-    private final static HashSet<UUID> mutedSet = new HashSet<>();
+    private final static Set<UUID> mutedSet = Collections.newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
 
     public static void setMuteState(Player ply, boolean muted) {
         setMuteState(ply.getUniqueId(), muted);
     }
 
     public static void setMuteState(UUID uuid, boolean muted) {
-        synchronized (mutedSet){
-            if (muted) {
-                mutedSet.add(uuid);
-            } else {
-                mutedSet.remove(uuid);
-            }
+        if (muted) {
+            mutedSet.add(uuid);
+        } else {
+            mutedSet.remove(uuid);
         }
     }
 
@@ -36,7 +36,7 @@ private String[] getList(UUID ignoredPerson) {
         return list.split(",");
     }
 
-    public void add(UUID key, UUID value) {
+    public synchronized void add(UUID key, UUID value) {
         String[] old = getList(key);
         Set<String> newList = new HashSet<>();
         newList.addAll(Arrays.asList(old));
@@ -44,7 +44,7 @@ public void add(UUID key, UUID value) {
         setList(key, newList);
     }
 
-    public void remove(UUID key, UUID value) {
+    public synchronized void remove(UUID key, UUID value) {
         String[] old = getList(key);
         Set<String> newList = new HashSet<>();
         newList.addAll(Arrays.asList(old));
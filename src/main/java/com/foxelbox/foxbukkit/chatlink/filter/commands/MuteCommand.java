@@ -18,6 +18,7 @@
 
 import com.foxelbox.foxbukkit.chatlink.Messages;
 import com.foxelbox.foxbukkit.chatlink.Player;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
 import com.foxelbox.foxbukkit.chatlink.filter.MuteList;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
@@ -32,8 +33,8 @@
 @ICommand.Permission("foxbukkit.filter.mute")
 public class MuteCommand extends ICommand {
     @Override
-    public ChatMessageOut run(Player sender, ChatMessageIn messageIn, String formattedName, String[] args) throws CommandException {
-        final Player target = PlayerHelper.matchPlayerSingle(args[0], false);
+    public ChatMessageOut run(Player sender, ChatMessageIn messageIn, String formattedName, ArgumentView args) throws CommandException {
+        final Player target = PlayerHelper.matchPlayerSingle(args.get(0), false);
         MuteList.setMuteState(target, true);
         ChatMessageOut reply = makeReply(messageIn);
         reply.to = new MessageTarget(Messages.TargetType.ALL, null);
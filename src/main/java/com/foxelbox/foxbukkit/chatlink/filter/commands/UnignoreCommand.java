@@ -17,6 +17,7 @@
 package com.foxelbox.foxbukkit.chatlink.filter.commands;
 
 import com.foxelbox.foxbukkit.chatlink.Player;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
 import com.foxelbox.foxbukkit.chatlink.filter.IgnoreList;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
@@ -30,8 +31,8 @@
 @ICommand.Permission("foxbukkit.filter.ignore")
 public class UnignoreCommand extends ICommand {
     @Override
-    public ChatMessageOut run(Player sender, ChatMessageIn messageIn, String formattedName, String[] args) throws CommandException {
-        final Player target = PlayerHelper.matchPlayerSingle(args[0], false);
+    public ChatMessageOut run(Player sender, ChatMessageIn messageIn, String formattedName, ArgumentView args) throws CommandException {
+        final Player target = PlayerHelper.matchPlayerSingle(args.get(0), false);
         IgnoreList.remove(target.getUniqueId(), sender.getUniqueId());
         ChatMessageOut reply = makeReply(messageIn);
         reply.setContentsPlain("\u00a75[FBCL]\u00a7f Unignored " + target.getName());
@@ -57,22 +57,4 @@ public Messages.ChatMessageIn toProtoBuf() {
 
         return builder.build();
     }
-
-    public static ChatMessageIn fromProtoBuf(Messages.ChatMessageIn message) {
-        ChatMessageIn ret = new ChatMessageIn();
-
-        ret.server = message.getServer();
-        if(message.getFrom() != null) {
-            ret.from = new UserInfo(ProtobufUUID.convertProtobufToJava(message.getFrom().getUuid()), message.getFrom().getName());
-        }
-
-        ret.timestamp = message.getTimestamp();
-
-        ret.context = ProtobufUUID.convertProtobufToJava(message.getContext());
-        ret.type = message.getType();
-
-        ret.contents = message.getContents();
-
-        return ret;
-    }
 }
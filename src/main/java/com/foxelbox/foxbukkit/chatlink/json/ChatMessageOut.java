@@ -16,13 +16,12 @@
  */
 package com.foxelbox.foxbukkit.chatlink.json;
 
-import com.foxelbox.foxbukkit.chatlink.Main;
 import com.foxelbox.foxbukkit.chatlink.Messages;
 import com.foxelbox.foxbukkit.chatlink.ProtobufUUID;
+import com.foxelbox.foxbukkit.chatlink.util.MessageTemplate;
 import com.foxelbox.foxbukkit.chatlink.util.Utils;
 
 import java.util.*;
-import java.util.regex.Pattern;
 
 public class ChatMessageOut {
     public ChatMessageOut(String server, UserInfo from) {
@@ -48,6 +47,11 @@ public ChatMessageOut(ChatMessageIn messageIn, String formatXML, String[] format
         setContents(formatXML, formatXMLArgs);
     }
 
+    public ChatMessageOut(ChatMessageIn messageIn, MessageTemplate formatXML, String[] formatXMLArgs) {
+        this(messageIn);
+        setContents(formatXML, formatXMLArgs);
+    }
+
     public ChatMessageOut(ChatMessageIn messageIn) {
         this(messageIn.server, messageIn.from);
         this.context = messageIn.context;
@@ -57,138 +61,37 @@ public void setContents(String formatXML, String[] formatXMLArgs) {
         this.contents = String.format(formatXML, xmlEscapeArray(formatXMLArgs));
     }
 
-    public void setContentsPlain(String plain) {
-        this.contents = convertLegacyColors(Utils.XMLEscape(plain));
-    }
-
-    private static final char COLOR_CHAR = '\u00a7';
-    private static final Pattern FIX_REDUNDANT_TAGS = Pattern.compile("<([a-z]+)[^>]*>(\\s*)</\\1>", Pattern.CASE_INSENSITIVE);
-    private static final Map<Character, String> colorNames = new HashMap<>();
-    static {
-        colorNames.put('0', "black");
-        colorNames.put('1', "dark_blue");
-        colorNames.put('2', "dark_green");
-        colorNames.put('3', "dark_aqua");
-        colorNames.put('4', "dark_red");
-        colorNames.put('5', "dark_purple");
-        colorNames.put('6', "gold");
-        colorNames.put('7', "gray");
-        colorNames.put('8', "dark_gray");
-        colorNames.put('9', "blue");
-        colorNames.put('a', "green");
-        colorNames.put('b', "aqua");
-        colorNames.put('c', "red");
-        colorNames.put('d', "light_purple");
-        colorNames.put('e', "yellow");
-        colorNames.put('f', "white");
+    public void setContents(MessageTemplate formatXML, String[] formatXMLArgs) {
+        setRenderedContents(formatXML, xmlEscapeArray(formatXMLArgs));
     }
 
-    public static String convertLegacyColors(String in) {
-        StringBuilder out = new StringBuilder("<color name=\"white\">");
-
-        int lastPos = 0; char currentColor = 'f';
-
-        Set<String> openTagsSet = new HashSet<>();
-        Stack<String> openTags = new Stack<>();
-        openTagsSet.add("color");
-        openTags.push("color");
-
-        while(true) {
-            int pos = in.indexOf(COLOR_CHAR, lastPos);
-            if(pos < 0) {
-                if(lastPos == 0) {
-                    return in;
-                }
-                break;
-            }
-            char newColor = in.charAt(pos + 1);
-
-            if(pos > 0) {
-                out.append(in.substring(lastPos, pos));
-            }
-
-            lastPos = pos + 2;
-
-            if((newColor >= '0' && newColor <= '9') || (newColor >= 'a' && newColor <= 'f') || newColor == 'r') {
-
-                boolean doesNotChangeColor = newColor == 'r' || currentColor == newColor;
-
-                while(!openTags.empty()) {
-                    String tag = openTags.pop();
-                    if(doesNotChangeColor && tag.equals("color")) {
-                        continue;
-                    }
-                    out.append("</");
-                    out.append(tag);
-                    out.append('>');
-                }
-                openTagsSet.clear();
-
-                openTagsSet.add("color");
-                openTags.push("color");
-
-                if(doesNotChangeColor) {
-                    continue;
-                }
-
-                out.append("<color name=\"");
-                out.append(colorNames.get(newColor));
-                out.append("\">");
-
-                currentColor = newColor;
-            } else {
-                switch (newColor) {
-                    case 'l':
-                        if(!openTagsSet.contains("b")) {
-                            openTags.push("b");
-                            openTagsSet.add("b");
-                            out.append("<b>");
-                        }
-                        break;
-                    case 'm':
-                        if(!openTagsSet.contains("s")) {
-                            openTags.push("s");
-                            openTagsSet.add("s");
-                            out.append("<s>");
-                        }
-                        break;
-                    case 'n':
-                        if(!openTagsSet.contains("u")) {
-                            openTags.push("u");
-                            openTagsSet.add("u");
-                            out.append("<u>");
-                        }
-                        break;
-                    case 'o':
-                        if(!openTagsSet.contains("i")) {
-                            openTags.push("i");
-                            openTagsSet.add("i");
-                            out.append("<i>");
-                        }
-                        break;
-                }
-            }
+    /**
+     * Like setContents, for arguments that were already escaped and converted, e.g. by MessageHelper.renderPlayerArgs
+     */
+    public void setRenderedContents(MessageTemplate formatXML, String[] escapedArgs) {
+        this.contents = formatXML.format(escapedArgs);
+        if(formatXML.getId() != 0) {
+            this.template = formatXML;
+            this.templateArgs = escapedArgs;
+            this.templateContents = this.contents;
         }
+    }
 
-        if(lastPos < in.length()) {
-            out.append(in.substring(lastPos));
-        }
-        while(!openTags.empty()) {
-            String tag = openTags.pop();
-            out.append("</");
-            out.append(tag);
-            out.append('>');
-        }
+    public void setContentsPlain(String plain) {
+        this.contents = convertLegacyColors(Utils.XMLEscape(plain));
+    }
 
-        return FIX_REDUNDANT_TAGS.matcher(out.toString()).replaceAll("$2");
+    public static String convertLegacyColors(String in) {
+        return LegacyColorConverter.convert(in);
     }
 
     public String server;
     public UserInfo from;
     public MessageTarget to;
 
-    public long timestamp = System.currentTimeMillis() / 1000;
-    public long id = Main.redisManager.incrBy("lastMessageID", 1);
+    // Assigned by ChatQueueHandler when the message is actually sent
+    public long timestamp;
+    public long id;
 
     public UUID context;
     public boolean finalizeContext = false;
@@ -196,9 +99,45 @@ public static String convertLegacyColors(String in) {
 
     public int importance = 0;
 
+    // The only server this message needs to reach, or null. Only for messages whose recipients can't have moved yet
+    public String route;
+
     public String contents;
 
+    // Set when contents were rendered from a registered template, for servers using the template wire mode
+    private MessageTemplate template;
+    private String[] templateArgs;
+    private String templateContents;
+
+    /**
+     * Whether toProtoBuf(true) can leave out the rendered contents
+     */
+    public boolean isTemplated() {
+        // Anyone assigning contents directly afterwards gets the rendered form again
+        return template != null && contents != null && contents == templateContents;
+    }
+
+    public MessageTemplate getTemplate() {
+        return isTemplated() ? template : null;
+    }
+
+    public String[] getTemplateArgs() {
+        return isTemplated() ? templateArgs : null;
+    }
+
     public Messages.ChatMessageOut toProtoBuf() {
+        return toProtoBuf(false);
+    }
+
+    public Messages.ChatMessageOut toProtoBuf(boolean templated) {
+        return toProtoBuf(templated, false);
+    }
+
+    /**
+     * @param binaryPlayers whether PLAYER targets are written as UUIDs instead of UUID strings in the filter,
+     *                      only for servers that subscribed to the binary target families
+     */
+    public Messages.ChatMessageOut toProtoBuf(boolean templated, boolean binaryPlayers) {
         Messages.ChatMessageOut.Builder builder = Messages.ChatMessageOut.newBuilder();
 
         if(server != null) {
@@ -212,9 +151,19 @@ public Messages.ChatMessageOut toProtoBuf() {
         if(to != null && to.type != Messages.TargetType.ALL) {
             Messages.MessageTarget.Builder toBuilder = Messages.MessageTarget.newBuilder()
                     .setType(to.type);
-            toBuilder.clearFilter();
-            for(String s : to.filter) {
-                toBuilder.addFilter(s);
+            if(to.filter != null) {
+                for(String s : to.filter) {
+                    toBuilder.addFilter(s);
+                }
+            }
+            if(to.players != null) {
+                for(UUID player : to.players) {
+                    if(binaryPlayers) {
+                        toBuilder.addPlayers(ProtobufUUID.convertJavaToProtobuf(player));
+                    } else {
+                        toBuilder.addFilter(player.toString());
+                    }
+                }
             }
             builder.setTo(toBuilder);
         }
@@ -230,7 +179,12 @@ public Messages.ChatMessageOut toProtoBuf() {
             builder.setType(type);
         }
 
-        if(contents != null) {
+        if(templated && isTemplated()) {
+            builder.setTemplateId(template.getId());
+            for(String arg : templateArgs) {
+                builder.addTemplateArgs(arg);
+            }
+        } else if(contents != null) {
             builder.setContents(contents);
         }
 
@@ -248,6 +202,13 @@ public static ChatMessageOut fromProtoBuf(Messages.ChatMessageOut message) {
         if(message.getTo() != null) {
             List<String> filterTo = message.getTo().getFilterList();
             ret.to = new MessageTarget(message.getTo().getType(), filterTo.toArray(new String[filterTo.size()]));
+            if(message.getTo().getPlayersCount() > 0) {
+                List<Messages.UUID> playersTo = message.getTo().getPlayersList();
+                ret.to.players = new UUID[playersTo.size()];
+                for(int i = 0; i < ret.to.players.length; i++) {
+                    ret.to.players[i] = ProtobufUUID.convertProtobufToJava(playersTo.get(i));
+                }
+            }
         } else {
             ret.to = new MessageTarget(Messages.TargetType.ALL, null);
         }
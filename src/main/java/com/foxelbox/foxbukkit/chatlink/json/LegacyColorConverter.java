@@ -0,0 +1,206 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink.json;
+
+import java.util.regex.Pattern;
+
+/**
+ * Converts legacy color codes to chat XML in a single pass.
+ * Tag pairs that would end up containing only whitespace are dropped as they are closed.
+ */
+final class LegacyColorConverter {
+    private static final char COLOR_CHAR = '\u00a7';
+    private static final Pattern FIX_REDUNDANT_TAGS = Pattern.compile("<([a-z]+)[^>]*>(\\s*)</\\1>", Pattern.CASE_INSENSITIVE);
+
+    private static final byte CODE_IGNORE = 0;
+    private static final byte CODE_COLOR = 1;
+    private static final byte CODE_RESET = 2;
+    private static final byte CODE_FORMAT = 3;
+
+    private static final int TAG_COLOR = 0;
+    private static final int TAG_BOLD = 1;
+    private static final int TAG_STRIKETHROUGH = 2;
+    private static final int TAG_UNDERLINE = 3;
+    private static final int TAG_ITALIC = 4;
+
+    // Open tags are stacked three bits per tag, the color tag is always at the bottom
+    private static final int TAG_BITS = 3;
+    private static final int TAG_MASK = (1 << TAG_BITS) - 1;
+
+    private static final String[] FORMAT_OPEN_TAGS = { null, "<b>", "<s>", "<u>", "<i>" };
+    private static final String[] CLOSE_TAGS = { "</color>", "</b>", "</s>", "</u>", "</i>" };
+
+    private static final byte[] CODE_KINDS = new byte[128];
+    private static final byte[] CODE_TAGS = new byte[128];
+    private static final String[] COLOR_OPEN_TAGS = new String[128];
+
+    private static void color(char code, String name) {
+        CODE_KINDS[code] = CODE_COLOR;
+        COLOR_OPEN_TAGS[code] = "<color name=\"" + name + "\">";
+    }
+
+    private static void format(char code, int tag) {
+        CODE_KINDS[code] = CODE_FORMAT;
+        CODE_TAGS[code] = (byte)tag;
+    }
+
+    static {
+        color('0', "black");
+        color('1', "dark_blue");
+        color('2', "dark_green");
+        color('3', "dark_aqua");
+        color('4', "dark_red");
+        color('5', "dark_purple");
+        color('6', "gold");
+        color('7', "gray");
+        color('8', "dark_gray");
+        color('9', "blue");
+        color('a', "green");
+        color('b', "aqua");
+        color('c', "red");
+        color('d', "light_purple");
+        color('e', "yellow");
+        color('f', "white");
+
+        CODE_KINDS['r'] = CODE_RESET;
+
+        format('l', TAG_BOLD);
+        format('m', TAG_STRIKETHROUGH);
+        format('n', TAG_UNDERLINE);
+        format('o', TAG_ITALIC);
+    }
+
+    private LegacyColorConverter() { }
+
+    private static class Output {
+        final StringBuilder out;
+        // Only needed when the input may contain markup of its own, in which case the regex cleans up afterwards
+        final boolean dropEmptyTags;
+
+        // Bounds of the most recently written tag if it was an opening one, lastOpenStart < 0 otherwise
+        int lastOpenStart = -1;
+        int lastOpenEnd;
+
+        Output(int capacity, boolean dropEmptyTags) {
+            this.out = new StringBuilder(capacity);
+            this.dropEmptyTags = dropEmptyTags;
+        }
+
+        void open(String tag) {
+            lastOpenStart = out.length();
+            out.append(tag);
+            lastOpenEnd = out.length();
+        }
+
+        void close(int tag) {
+            if(dropEmptyTags && lastOpenStart >= 0 && isWhitespace(out, lastOpenEnd)) {
+                out.delete(lastOpenStart, lastOpenEnd);
+            } else {
+                out.append(CLOSE_TAGS[tag]);
+            }
+            lastOpenStart = -1;
+        }
+
+        private static boolean isWhitespace(StringBuilder str, int from) {
+            for(int i = from; i < str.length(); i++) {
+                switch(str.charAt(i)) {
+                    case ' ': case '\t': case '\n': case '\u000b': case '\f': case '\r':
+                        continue;
+                    default:
+                        return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    static String convert(String in) {
+        int pos = in.indexOf(COLOR_CHAR);
+        if(pos < 0) {
+            return in;
+        }
+
+        final boolean hasMarkup = in.indexOf('<') >= 0;
+        final Output output = new Output(in.length() + 64, !hasMarkup);
+        final StringBuilder out = output.out;
+
+        output.open(COLOR_OPEN_TAGS['f']);
+        int openTags = TAG_COLOR;
+        int openTagCount = 1;
+        int openTagSet = 1 << TAG_COLOR;
+        char currentColor = 'f';
+
+        int lastPos = 0;
+        while(pos >= 0) {
+            out.append(in, lastPos, pos);
+            lastPos = pos + 2;
+
+            // A trailing lone color char is dropped
+            final char code = (pos + 1 < in.length()) ? in.charAt(pos + 1) : COLOR_CHAR;
+            final byte kind = (code < CODE_KINDS.length) ? CODE_KINDS[code] : CODE_IGNORE;
+
+            switch(kind) {
+                case CODE_COLOR:
+                case CODE_RESET:
+                    final boolean keepColor = kind == CODE_RESET || code == currentColor;
+
+                    for(; openTagCount > 0; openTagCount--) {
+                        final int tag = openTags & TAG_MASK;
+                        openTags >>>= TAG_BITS;
+                        if(!keepColor || tag != TAG_COLOR) {
+                            output.close(tag);
+                        }
+                    }
+
+                    openTags = TAG_COLOR;
+                    openTagCount = 1;
+                    openTagSet = 1 << TAG_COLOR;
+
+                    if(!keepColor) {
+                        output.open(COLOR_OPEN_TAGS[code]);
+                        currentColor = code;
+                    }
+                    break;
+
+                case CODE_FORMAT:
+                    final int tag = CODE_TAGS[code];
+                    if((openTagSet & (1 << tag)) == 0) {
+                        openTags = (openTags << TAG_BITS) | tag;
+                        openTagCount++;
+                        openTagSet |= 1 << tag;
+                        output.open(FORMAT_OPEN_TAGS[tag]);
+                    }
+                    break;
+            }
+
+            pos = in.indexOf(COLOR_CHAR, lastPos);
+        }
+
+        if(lastPos < in.length()) {
+            out.append(in, lastPos, in.length());
+        }
+        for(; openTagCount > 0; openTagCount--) {
+            output.close(openTags & TAG_MASK);
+            openTags >>>= TAG_BITS;
+        }
+
+        if(hasMarkup) {
+            return FIX_REDUNDANT_TAGS.matcher(out).replaceAll("$2");
+        }
+        return out.toString();
+    }
+}
@@ -18,12 +18,20 @@
 
 import com.foxelbox.foxbukkit.chatlink.Messages;
 
+import java.util.UUID;
+
 public class MessageTarget {
     public MessageTarget(Messages.TargetType type, String[] filter) {
         this.type = type;
         this.filter = filter;
     }
 
+    public MessageTarget(UUID... players) {
+        this.type = Messages.TargetType.PLAYER;
+        this.players = players;
+    }
+
     public Messages.TargetType type;
     public String[] filter;
+    public UUID[] players;
 }
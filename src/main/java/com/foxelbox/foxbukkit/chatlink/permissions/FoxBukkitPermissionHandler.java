@@ -18,12 +18,9 @@
 
 import com.foxelbox.foxbukkit.chatlink.Main;
 import com.foxelbox.foxbukkit.chatlink.Player;
+import com.foxelbox.foxbukkit.chatlink.util.PlayerHelper;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.UUID;
 
@@ -32,8 +29,7 @@ public class FoxBukkitPermissionHandler {
 
 	private boolean loaded = false;
 	private final Map<String,String> playerGroups = Main.redisManager.createCachedRedisMap("playergroups");
-	private final HashMap<String,HashSet<String>> groupPermissions = new HashMap<>();
-	private final HashMap<String,HashSet<String>> groupProhibitions = new HashMap<>();
+	private volatile PermissionModel model = PermissionModel.EMPTY;
 
 	public void load() {
 		if(loaded) return;
@@ -42,56 +38,7 @@ public void load() {
 
 	public void reload() {
 		loaded = true;
-		groupPermissions.clear();
-		groupProhibitions.clear();
-
-        final File file = new File(Main.getDataFolder(), "permissions.txt");
-
-        try {
-            String currentGroup = null;
-            HashSet<String> currentPermissions = null;
-            HashSet<String> currentProhibitions = null;
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    line = line.trim().toLowerCase();
-                    if (line.length() < 1) continue;
-                    char c = line.charAt(0);
-                    if (c == '-') {
-                        line = line.substring(1).trim();
-                        currentPermissions.remove(line);
-                        currentProhibitions.add(line);
-                    } else if (c == '+') {
-                        line = line.substring(1).trim();
-                        currentPermissions.add(line);
-                        currentProhibitions.remove(line);
-                    } else {
-                        if (currentGroup != null) {
-                            groupPermissions.put(currentGroup, currentPermissions);
-                            groupProhibitions.put(currentGroup, currentProhibitions);
-                        }
-                        int i = line.indexOf(' ');
-                        currentPermissions = new HashSet<>();
-                        currentProhibitions = new HashSet<>();
-                        if (i > 0) {
-                            currentGroup = line.substring(0, i).trim();
-                            String tmp = line.substring(i + 1).trim();
-                            currentPermissions.addAll(groupPermissions.get(tmp));
-                            currentProhibitions.addAll(groupProhibitions.get(tmp));
-                        } else {
-                            currentGroup = line;
-                        }
-                    }
-                }
-                if (currentGroup != null) {
-                    groupPermissions.put(currentGroup, currentPermissions);
-                    groupProhibitions.put(currentGroup, currentProhibitions);
-                }
-            }
-        }
-        catch(Exception e) {
-            e.printStackTrace();
-        }
+		model = PermissionModel.load(new File(Main.getDataFolder(), "permissions.txt"));
 	}
 
 	public void save() {
@@ -104,36 +51,7 @@ public boolean has(Player player, String permission) {
 	}
 
 	public boolean has(UUID uuid, String permission) {
-		permission = permission.toLowerCase();
-
-		String currentGroup = getGroup(uuid);
-
-		HashSet<String> currentPermissions = groupPermissions.get(getGroup(uuid));
-        if(currentPermissions == null) return false;
-
-		if(currentPermissions.contains(permission)) return true;
-
-		HashSet<String> currentProhibitions = groupProhibitions.get(currentGroup);
-		if(currentProhibitions != null && currentProhibitions.contains(permission)) return false;
-
-		int xpos = 0;
-		String tperm = permission;
-		while((xpos = tperm.lastIndexOf('.')) > 0) {
-			tperm = tperm.substring(0, xpos);
-			String tperm2 = tperm + ".*";
-			if(currentProhibitions != null && currentProhibitions.contains(tperm2)) { currentProhibitions.add(permission); return false; }
-			if(currentPermissions.contains(tperm2)) { currentPermissions.add(permission); return true; }
-		}
-
-		if(currentProhibitions != null && currentProhibitions.contains("*")) { currentProhibitions.add(permission); return false; }
-		if(currentPermissions.contains("*")) { currentPermissions.add(permission); return true; }
-
-		if(currentProhibitions == null) {
-			currentProhibitions = new HashSet<>();
-			groupProhibitions.put(currentGroup, currentProhibitions);
-		}
-		currentProhibitions.add(permission);
-		return false;
+		return model.has(getGroup(uuid), permission);
 	}
 
 	public String getGroup(UUID uuid) {
@@ -146,6 +64,7 @@ public String getGroup(UUID uuid) {
 	public void setGroup(UUID uuid, String group) {
 		group = group.toLowerCase();
 		playerGroups.put(uuid.toString(), group);
+		PlayerHelper.invalidateIdentity(uuid);
 		save();
 	}
 
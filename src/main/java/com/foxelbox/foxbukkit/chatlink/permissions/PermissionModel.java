@@ -0,0 +1,206 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink.permissions;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable snapshot of permissions.txt with inheritance already applied.
+ */
+public class PermissionModel {
+	private static final byte NONE = 0;
+	private static final byte ALLOW = 1;
+	private static final byte DENY = 2;
+
+	private static class WildcardNode {
+		private final Map<String, WildcardNode> children = new HashMap<>();
+		private byte decision = NONE;
+
+		WildcardNode child(String segment) {
+			return children.get(segment);
+		}
+
+		WildcardNode getOrCreateChild(String segment) {
+			WildcardNode child = children.get(segment);
+			if(child == null) {
+				child = new WildcardNode();
+				children.put(segment, child);
+			}
+			return child;
+		}
+	}
+
+	static class CompiledGroup {
+		private final Set<String> permissions;
+		private final Set<String> prohibitions;
+		private final WildcardNode wildcards = new WildcardNode();
+
+		// Decisions keyed by the node exactly as callers pass it, so repeated checks are a single lookup
+		private final ConcurrentMap<String, Boolean> decisions = new ConcurrentHashMap<>();
+
+		CompiledGroup(Set<String> permissions, Set<String> prohibitions) {
+			this.permissions = Collections.unmodifiableSet(new HashSet<>(permissions));
+			this.prohibitions = Collections.unmodifiableSet(new HashSet<>(prohibitions));
+
+			for(String permission : this.permissions)
+				addWildcard(permission, ALLOW);
+			// Prohibitions win over permissions on the same wildcard
+			for(String prohibition : this.prohibitions)
+				addWildcard(prohibition, DENY);
+		}
+
+		private void addWildcard(String node, byte decision) {
+			if(!node.endsWith("*"))
+				return;
+
+			if(node.length() == 1) {
+				if(wildcards.decision != DENY)
+					wildcards.decision = decision;
+				return;
+			}
+
+			if(!node.endsWith(".*"))
+				return;
+
+			final String prefix = node.substring(0, node.length() - 2);
+			WildcardNode current = wildcards;
+			int segmentStart = 0;
+			for(int i = 0; i <= prefix.length(); i++) {
+				if(i < prefix.length() && prefix.charAt(i) != '.')
+					continue;
+				current = current.getOrCreateChild(prefix.substring(segmentStart, i));
+				segmentStart = i + 1;
+			}
+			if(current.decision != DENY)
+				current.decision = decision;
+		}
+
+		boolean has(String permission) {
+			Boolean decision = decisions.get(permission);
+			if(decision == null) {
+				decision = resolve(permission.toLowerCase());
+				decisions.putIfAbsent(permission, decision);
+			}
+			return decision;
+		}
+
+		private boolean resolve(String permission) {
+			if(permissions.contains(permission))
+				return true;
+			if(prohibitions.contains(permission))
+				return false;
+
+			// The most specific "prefix.*" wins, "*" is the fallback
+			byte decision = NONE;
+			WildcardNode current = wildcards;
+			int segmentStart = 0;
+			for(int i = 0; i < permission.length() && current != null; i++) {
+				if(permission.charAt(i) != '.')
+					continue;
+				current = current.child(permission.substring(segmentStart, i));
+				segmentStart = i + 1;
+				if(current != null && i > 0 && current.decision != NONE)
+					decision = current.decision;
+			}
+
+			if(decision == NONE)
+				decision = wildcards.decision;
+
+			return decision == ALLOW;
+		}
+	}
+
+	public static final PermissionModel EMPTY = new PermissionModel(Collections.<String, CompiledGroup>emptyMap());
+
+	private final Map<String, CompiledGroup> groups;
+
+	private PermissionModel(Map<String, CompiledGroup> groups) {
+		this.groups = groups;
+	}
+
+	public boolean has(String group, String permission) {
+		final CompiledGroup compiledGroup = groups.get(group);
+		return compiledGroup != null && compiledGroup.has(permission);
+	}
+
+	public static PermissionModel load(File file) {
+		final Map<String, HashSet<String>> groupPermissions = new HashMap<>();
+		final Map<String, HashSet<String>> groupProhibitions = new HashMap<>();
+
+		try {
+			String currentGroup = null;
+			HashSet<String> currentPermissions = null;
+			HashSet<String> currentProhibitions = null;
+			try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					line = line.trim().toLowerCase();
+					if (line.length() < 1) continue;
+					char c = line.charAt(0);
+					if (c == '-') {
+						line = line.substring(1).trim();
+						currentPermissions.remove(line);
+						currentProhibitions.add(line);
+					} else if (c == '+') {
+						line = line.substring(1).trim();
+						currentPermissions.add(line);
+						currentProhibitions.remove(line);
+					} else {
+						if (currentGroup != null) {
+							groupPermissions.put(currentGroup, currentPermissions);
+							groupProhibitions.put(currentGroup, currentProhibitions);
+						}
+						int i = line.indexOf(' ');
+						currentPermissions = new HashSet<>();
+						currentProhibitions = new HashSet<>();
+						if (i > 0) {
+							currentGroup = line.substring(0, i).trim();
+							String tmp = line.substring(i + 1).trim();
+							currentPermissions.addAll(groupPermissions.get(tmp));
+							currentProhibitions.addAll(groupProhibitions.get(tmp));
+						} else {
+							currentGroup = line;
+						}
+					}
+				}
+				if (currentGroup != null) {
+					groupPermissions.put(currentGroup, currentPermissions);
+					groupProhibitions.put(currentGroup, currentProhibitions);
+				}
+			}
+		}
+		catch(Exception e) {
+			e.printStackTrace();
+		}
+
+		final Map<String, CompiledGroup> groups = new HashMap<>();
+		for(Map.Entry<String, HashSet<String>> group : groupPermissions.entrySet()) {
+			final HashSet<String> prohibitions = groupProhibitions.get(group.getKey());
+			groups.put(group.getKey(), new CompiledGroup(group.getValue(), (prohibitions != null) ? prohibitions : Collections.<String>emptySet()));
+		}
+		return new PermissionModel(Collections.unmodifiableMap(groups));
+	}
+}
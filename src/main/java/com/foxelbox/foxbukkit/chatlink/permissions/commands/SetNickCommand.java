@@ -17,6 +17,7 @@
 package com.foxelbox.foxbukkit.chatlink.permissions.commands;
 
 import com.foxelbox.foxbukkit.chatlink.Player;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
@@ -31,10 +32,10 @@
 @ICommand.Permission("foxbukkit.users.setnick")
 public class SetNickCommand extends ICommand {
     @Override
-    public ChatMessageOut run(Player commandSender, ChatMessageIn messageIn, String formattedName, String[] args) throws CommandException {
-		final Player otherPly = PlayerHelper.matchPlayerSingle(args[0], false);
+    public ChatMessageOut run(Player commandSender, ChatMessageIn messageIn, String formattedName, ArgumentView args) throws CommandException {
+		final Player otherPly = PlayerHelper.matchPlayerSingle(args.get(0), false);
 
-		final String newNick = Utils.concatArray(" ", args, 1, "").replace('$', '\u00a7');
+		final String newNick = args.rest(1, "").replace('$', '\u00a7');
 		if (Player.getPlayerFromMessage(messageIn).getLevel() < otherPly.getLevel())
 			throw new PermissionDeniedException();
 
@@ -18,6 +18,8 @@
 
 import com.foxelbox.foxbukkit.chatlink.Main;
 import com.foxelbox.foxbukkit.chatlink.Player;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
+import com.foxelbox.foxbukkit.chatlink.commands.system.CommandArguments;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
@@ -35,12 +37,12 @@
 @ICommand.Permission("foxbukkit.users.setrank")
 public class SetRankCommand extends ICommand {
 	@Override
-	public ChatMessageOut run(Player commandSender, ChatMessageIn messageIn, String formattedName, String[] args) throws CommandException {
-		args = parseFlags(args);
+	public ChatMessageOut run(Player commandSender, ChatMessageIn messageIn, String formattedName, CommandArguments arguments) throws CommandException {
+		final ArgumentView args = arguments.getArgs();
 
-		String otherName = args[0];
-		Player otherPly = new Player(UUID.fromString(PlayerHelper.playerNameToUUID.get(args[0].toLowerCase())));
-		String newRank = args[1];
+		String otherName = args.get(0);
+		Player otherPly = new Player(UUID.fromString(PlayerHelper.playerNameToUUID.get(args.get(0).toLowerCase())));
+		String newRank = args.get(1);
 		String oldRank = PlayerHelper.getPlayerRank(otherPly.getUniqueId());
 		
 		if (newRank.equalsIgnoreCase(oldRank))
@@ -70,7 +72,7 @@ public ChatMessageOut run(Player commandSender, ChatMessageIn messageIn, String
 		if(newlvl >= opLvl && !commandSender.hasPermission("foxbukkit.users.modifystaff"))
 			throw new PermissionDeniedException();
 
-		if(booleanFlags.contains('p') && newlvl < oldlvl)
+		if(arguments.hasFlag('p') && newlvl < oldlvl)
 			throw new PermissionDeniedException();
 
         FoxBukkitPermissionHandler.instance.setGroup(otherPly.getUniqueId(), newRank);
@@ -17,13 +17,14 @@
 package com.foxelbox.foxbukkit.chatlink.permissions.commands;
 
 import com.foxelbox.foxbukkit.chatlink.Player;
+import com.foxelbox.foxbukkit.chatlink.commands.system.ArgumentView;
+import com.foxelbox.foxbukkit.chatlink.commands.system.CommandArguments;
 import com.foxelbox.foxbukkit.chatlink.commands.system.ICommand;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageIn;
 import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
 import com.foxelbox.foxbukkit.chatlink.util.CommandException;
 import com.foxelbox.foxbukkit.chatlink.util.PermissionDeniedException;
 import com.foxelbox.foxbukkit.chatlink.util.PlayerHelper;
-import com.foxelbox.foxbukkit.chatlink.util.Utils;
 
 @ICommand.Names("settag")
 @ICommand.Help(
@@ -36,17 +37,17 @@
 @ICommand.Permission("foxbukkit.users.settag")
 public class SetTagCommand extends ICommand {
     @Override
-    public ChatMessageOut run(Player commandSender, ChatMessageIn messageIn, String formattedName, String[] args) throws CommandException {
-		args = parseFlags(args);
+    public ChatMessageOut run(Player commandSender, ChatMessageIn messageIn, String formattedName, CommandArguments arguments) throws CommandException {
+		final ArgumentView args = arguments.getArgs();
 
-		final Player otherPly = PlayerHelper.matchPlayerSingle(args[0], false);
+		final Player otherPly = PlayerHelper.matchPlayerSingle(args.get(0), false);
 
-		final String newTag = Utils.concatArray(" ", args, 1, "").replace('$', '\u00a7');
+		final String newTag = args.rest(1, "").replace('$', '\u00a7');
 		if (commandSender.getLevel() < otherPly.getLevel())
 			throw new PermissionDeniedException();
 
-		final boolean useRankTag = booleanFlags.contains('r');
-		final boolean force = booleanFlags.contains('f');
+		final boolean useRankTag = arguments.hasFlag('r');
+		final boolean force = arguments.hasFlag('f');
 		final String tagTypeName = useRankTag ? "rank tag" : "tag";
 
 		final String previousTag = PlayerHelper.getPlayerTagRaw(otherPly.getUniqueId(), useRankTag);
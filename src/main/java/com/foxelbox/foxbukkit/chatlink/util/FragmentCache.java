@@ -0,0 +1,101 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink.util;
+
+import com.foxelbox.foxbukkit.chatlink.Main;
+import com.foxelbox.foxbukkit.chatlink.json.ChatMessageOut;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Remembers the XML rendering of names, nicks and tags, which repeat on nearly every chat line.
+ * Only the name rendering in MessageHelper goes through here; message text and UUIDs are rendered directly.
+ * Fragments longer than the configured cap are rendered directly as well.
+ */
+public class FragmentCache {
+	private static final int MAX_SIZE = Integer.parseInt(Main.configuration.getValue("fragment-cache-size", "10000"));
+	private static final int MAX_LENGTH = Integer.parseInt(Main.configuration.getValue("fragment-cache-max-length", "64"));
+
+	private static final LoadingCache<String, String> escapedFragments = build("escaped", new CacheLoader<String, String>() {
+		@Override
+		public String load(String fragment) {
+			return ChatMessageOut.convertLegacyColors(Utils.XMLEscape(fragment));
+		}
+	});
+
+	private static final LoadingCache<String, String> convertedFragments = build("converted", new CacheLoader<String, String>() {
+		@Override
+		public String load(String fragment) {
+			return ChatMessageOut.convertLegacyColors(fragment);
+		}
+	});
+
+	private FragmentCache() { }
+
+	private static LoadingCache<String, String> build(String name, CacheLoader<String, String> loader) {
+		final LoadingCache<String, String> cache = CacheBuilder.newBuilder()
+				.maximumSize(MAX_SIZE)
+				.recordStats()
+				.build(loader);
+
+		LinkStats.gauge("fragments." + name + ".hits", new LinkStats.Gauge() {
+			@Override
+			public long get() {
+				return cache.stats().hitCount();
+			}
+		});
+		LinkStats.gauge("fragments." + name + ".misses", new LinkStats.Gauge() {
+			@Override
+			public long get() {
+				return cache.stats().missCount();
+			}
+		});
+		LinkStats.gauge("fragments." + name + ".evictions", new LinkStats.Gauge() {
+			@Override
+			public long get() {
+				return cache.stats().evictionCount();
+			}
+		});
+		LinkStats.gauge("fragments." + name + ".size", new LinkStats.Gauge() {
+			@Override
+			public long get() {
+				return cache.size();
+			}
+		});
+
+		return cache;
+	}
+
+	/**
+	 * Same as convertLegacyColors(XMLEscape(fragment))
+	 */
+	public static String escapeAndConvert(String fragment) {
+		if(fragment.length() > MAX_LENGTH)
+			return ChatMessageOut.convertLegacyColors(Utils.XMLEscape(fragment));
+		return escapedFragments.getUnchecked(fragment);
+	}
+
+	/**
+	 * Same as convertLegacyColors(fragment)
+	 */
+	public static String convert(String fragment) {
+		if(fragment.length() > MAX_LENGTH)
+			return ChatMessageOut.convertLegacyColors(fragment);
+		return convertedFragments.getUnchecked(fragment);
+	}
+}
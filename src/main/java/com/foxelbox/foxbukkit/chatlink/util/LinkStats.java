@@ -0,0 +1,82 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink.util;
+
+import com.foxelbox.foxbukkit.chatlink.Main;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LinkStats {
+	public interface Gauge {
+		long get();
+	}
+
+	private static final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+	private LinkStats() { }
+
+	public static AtomicLong counter(String name) {
+		AtomicLong counter = counters.get(name);
+		if(counter != null)
+			return counter;
+
+		counter = new AtomicLong();
+		final AtomicLong existing = counters.putIfAbsent(name, counter);
+		return (existing != null) ? existing : counter;
+	}
+
+	public static void gauge(String name, Gauge gauge) {
+		gauges.put(name, gauge);
+	}
+
+	public static SortedMap<String, Long> snapshot() {
+		final SortedMap<String, Long> result = new TreeMap<>();
+		for(Map.Entry<String, AtomicLong> counter : counters.entrySet())
+			result.put(counter.getKey(), counter.getValue().get());
+		for(Map.Entry<String, Gauge> gauge : gauges.entrySet())
+			result.put(gauge.getKey(), gauge.getValue().get());
+		return result;
+	}
+
+	/**
+	 * Periodically writes a snapshot into the given Redis hash so external monitoring can alert on it.
+	 */
+	public static void startPublishing(final String redisKey, int intervalSeconds) {
+		Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("LinkStats publisher").build()
+		).scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					for(Map.Entry<String, Long> stat : snapshot().entrySet())
+						Main.redisManager.hset(redisKey, stat.getKey(), String.valueOf(stat.getValue()));
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+}
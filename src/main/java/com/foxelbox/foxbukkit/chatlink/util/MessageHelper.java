@@ -28,6 +28,10 @@
 
 public class MessageHelper {
 	private static final String PLAYER_FORMAT = "<span onClick=\"suggest_command('/pm %1$s ')\"%3$s>%2$s</span>";
+	private static final MessageTemplate PLAYER_TEMPLATE = MessageTemplate.compile(PLAYER_FORMAT);
+	private static final MessageTemplate HOVER_TEMPLATE = MessageTemplate.compile("<color name=\"%1$s\">%2$s</color>");
+	private static final MessageTemplate ON_HOVER_TEMPLATE = MessageTemplate.compile(" onHover=\"show_text('%1$s')\"");
+	private static final MessageTemplate BUTTON_TEMPLATE = MessageTemplate.compile("<color name=\"%3$s\" onClick=\"%4$s('%1$s')\" onHover=\"show_text('%1$s')\">[%2$s]</color>");
 
 	private static final String FB_DEFAULT_COLOR = "dark_purple";
 	private static final String FB_ERROR_COLOR = "dark_red";
@@ -36,15 +40,23 @@ public class MessageHelper {
 	public static final String OFFLINE_COLOR = "dark_red";
 
     public static String escape(String s) {
-        s = s.replace("&", "&amp;");
-        s = s.replace("\"", "&quot;");
-        s = s.replace("'", "&apos;");
-        s = s.replace("<", "&lt;");
-        s = s.replace(">", "&gt;");
-
-        return s;
+        return Utils.XMLEscape(s);
     }
 
+	/**
+	 * Escaped and converted arguments for templates starting with ChatQueueHandler.PLAYER_FORMAT.
+	 * Names repeat on every line and are memoized, the UUID and message text are rendered directly.
+	 */
+	public static String[] renderPlayerArgs(String name, UUID uuid, String formattedName, String... text) {
+		final String[] out = new String[3 + text.length];
+		out[0] = FragmentCache.escapeAndConvert(name);
+		out[1] = uuid.toString();
+		out[2] = FragmentCache.escapeAndConvert(formattedName);
+		for(int i = 0; i < text.length; i++)
+			out[3 + i] = ChatMessageOut.convertLegacyColors(Utils.XMLEscape(text[i]));
+		return out;
+	}
+
 	public static String format(Player commandSender) {
 		return format(commandSender.getUniqueId(), commandSender, false);
 	}
@@ -72,17 +84,17 @@ private static String format(UUID uuid, Player commandSender, boolean withTag) {
 			}
 
             final String color = commandSender.isOnline() ? ONLINE_COLOR : OFFLINE_COLOR;
-            final String hoverText = String.format("<color name=\"%1$s\">%2$s</color>", color, commandSender.getName());
-            onHover = " onHover=\"show_text('" + escape(hoverText) + "')\"";
+            final String hoverText = HOVER_TEMPLATE.format(color, commandSender.getName());
+            onHover = ON_HOVER_TEMPLATE.formatEscaped(hoverText);
 
 			//onHover = " onHover=\"show_entity('{id:\"" + commandSender.getUniqueId() + "\",name:\"" + name + "\"}')\"";
 		}
-		return String.format(PLAYER_FORMAT, name, ChatMessageOut.convertLegacyColors(displayName), onHover);
+		return PLAYER_TEMPLATE.format(name, FragmentCache.convert(displayName), onHover);
 	}
 
 	public static String button(String command, String label, String color, boolean run) {
 		final String eventType = run ? "run_command" : "suggest_command";
-		return String.format("<color name=\"%3$s\" onClick=\"%4$s('%1$s')\" onHover=\"show_text('%1$s')\">[%2$s]</color>", escape(command), escape(label), escape(color), eventType);
+		return BUTTON_TEMPLATE.formatEscaped(command, label, color, eventType);
 	}
 
 	public static ChatMessageOut sendServerMessage(String format, String... params) {
@@ -122,7 +134,7 @@ public static ChatMessageOut sendMessage(String color, Player commandSender, Str
 		}
 
         ChatMessageOut result = new ChatMessageOut("", new UserInfo(null, ""));
-        result.to = new MessageTarget(Messages.TargetType.PLAYER, new String[] { commandSender.getUniqueId().toString() });
+        result.to = new MessageTarget(commandSender.getUniqueId());
 		result.setContents(format, params);
         return result;
 	}
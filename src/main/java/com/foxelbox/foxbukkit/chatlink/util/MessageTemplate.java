@@ -0,0 +1,192 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * A String.format pattern split once into literals and argument slots.
+ * Only %s, %n$s and %% are handled natively, any other pattern is passed on to String.format unchanged.
+ */
+public final class MessageTemplate {
+	private static final ConcurrentMap<Integer, MessageTemplate> registry = new ConcurrentHashMap<>();
+
+	private final int id;
+	private final String pattern;
+	private final String[] literals;
+	private final int[] slots;
+	private final int literalLength;
+	private final int requiredArgs;
+	private final boolean compiled;
+
+	private MessageTemplate(int id, String pattern, String[] literals, int[] slots, boolean compiled) {
+		this.id = id;
+		this.pattern = pattern;
+		this.literals = literals;
+		this.slots = slots;
+		this.compiled = compiled;
+
+		int literalLength = 0;
+		if(literals != null)
+			for(String literal : literals)
+				literalLength += literal.length();
+		this.literalLength = literalLength;
+
+		int requiredArgs = 0;
+		if(slots != null)
+			for(int slot : slots)
+				requiredArgs = Math.max(requiredArgs, slot + 1);
+		this.requiredArgs = requiredArgs;
+	}
+
+	public static MessageTemplate compile(String pattern) {
+		return compile(0, pattern);
+	}
+
+	/**
+	 * Compiles the pattern and publishes it for the template wire mode. The ID is derived from the pattern
+	 * itself, so every link instance and every restart agrees on it.
+	 */
+	public static MessageTemplate register(String pattern) {
+		final CRC32 crc = new CRC32();
+		crc.update(pattern.getBytes(StandardCharsets.UTF_8));
+		final int id = ((int)crc.getValue() != 0) ? (int)crc.getValue() : 1;
+
+		final MessageTemplate template = compile(id, pattern);
+		final MessageTemplate existing = registry.putIfAbsent(id, template);
+		if(existing == null)
+			return template;
+		if(!existing.pattern.equals(pattern))
+			throw new IllegalStateException("Template ID collision between \"" + existing.pattern + "\" and \"" + pattern + "\"");
+		return existing;
+	}
+
+	public static Collection<MessageTemplate> getRegistered() {
+		return Collections.unmodifiableCollection(registry.values());
+	}
+
+	private static MessageTemplate compile(int id, String pattern) {
+		final List<String> literals = new ArrayList<>();
+		final List<Integer> slots = new ArrayList<>();
+		final StringBuilder literal = new StringBuilder();
+		int ordinaryIndex = 0;
+
+		final int length = pattern.length();
+		for(int i = 0; i < length; i++) {
+			final char c = pattern.charAt(i);
+			if(c != '%') {
+				literal.append(c);
+				continue;
+			}
+
+			if(i + 1 >= length)
+				return new MessageTemplate(id, pattern, null, null, false);
+
+			final char next = pattern.charAt(i + 1);
+			final int slot;
+			if(next == '%') {
+				literal.append('%');
+				i++;
+				continue;
+			} else if(next == 's') {
+				slot = ordinaryIndex++;
+				i++;
+			} else {
+				int end = i + 1;
+				while(end < length && pattern.charAt(end) >= '0' && pattern.charAt(end) <= '9')
+					end++;
+				if(end == i + 1 || end + 1 >= length || pattern.charAt(end) != '$' || pattern.charAt(end + 1) != 's' || pattern.charAt(i + 1) == '0')
+					return new MessageTemplate(id, pattern, null, null, false);
+				try {
+					slot = Integer.parseInt(pattern.substring(i + 1, end)) - 1;
+				} catch (NumberFormatException e) {
+					return new MessageTemplate(id, pattern, null, null, false);
+				}
+				i = end + 1;
+			}
+
+			literals.add(literal.toString());
+			literal.setLength(0);
+			slots.add(slot);
+		}
+		literals.add(literal.toString());
+
+		final int[] slotArray = new int[slots.size()];
+		for(int i = 0; i < slotArray.length; i++)
+			slotArray[i] = slots.get(i);
+
+		return new MessageTemplate(id, pattern, literals.toArray(new String[literals.size()]), slotArray, true);
+	}
+
+	/**
+	 * 0 unless the template was registered
+	 */
+	public int getId() {
+		return id;
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
+	public String format(String... args) {
+		if(!compiled || args.length < requiredArgs)
+			return String.format(pattern, (Object[])args);
+
+		final StringBuilder out = new StringBuilder(estimateLength(args));
+		for(int i = 0; i < slots.length; i++) {
+			out.append(literals[i]);
+			out.append(args[slots[i]]);
+		}
+		out.append(literals[slots.length]);
+		return out.toString();
+	}
+
+	/**
+	 * Same as format() with every argument passed through Utils.XMLEscape, without the intermediate strings
+	 */
+	public String formatEscaped(String... args) {
+		if(!compiled || args.length < requiredArgs) {
+			final String[] escapedArgs = new String[args.length];
+			for(int i = 0; i < args.length; i++)
+				escapedArgs[i] = Utils.XMLEscape(args[i]);
+			return String.format(pattern, (Object[])escapedArgs);
+		}
+
+		final StringBuilder out = new StringBuilder(estimateLength(args) + 16);
+		for(int i = 0; i < slots.length; i++) {
+			out.append(literals[i]);
+			Utils.XMLEscape(args[slots[i]], out);
+		}
+		out.append(literals[slots.length]);
+		return out.toString();
+	}
+
+	private int estimateLength(String[] args) {
+		int length = literalLength;
+		for(int slot : slots)
+			length += (args[slot] != null) ? args[slot].length() : 4;
+		return length;
+	}
+}
@@ -0,0 +1,140 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink.util;
+
+import com.foxelbox.foxbukkit.chatlink.Main;
+import com.foxelbox.foxbukkit.chatlink.Player;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local view of who is online where. Updated from the join/quit messages this link sees and periodically
+ * reconciled against the Redis sets, since messages are spread across all running links.
+ */
+public class OnlinePlayerIndex {
+	public static final OnlinePlayerIndex instance = new OnlinePlayerIndex();
+
+	private final ConcurrentMap<UUID, String> playerServers = new ConcurrentHashMap<>();
+	private volatile Set<String> servers = Collections.emptySet();
+	private final PlayerNameIndex names = new PlayerNameIndex();
+
+	private final AtomicLong reconcileCorrections = LinkStats.counter("online.reconcile_corrections");
+	private final AtomicLong reconcileFailures = LinkStats.counter("online.reconcile_failures");
+
+	private OnlinePlayerIndex() {
+		LinkStats.gauge("online.players", new LinkStats.Gauge() {
+			@Override
+			public long get() {
+				return playerServers.size();
+			}
+		});
+	}
+
+	public void start(int refreshSeconds) {
+		reconcile();
+		Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Online player reconciler").build()
+		).scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					reconcile();
+				} catch (Exception e) {
+					reconcileFailures.incrementAndGet();
+					e.printStackTrace();
+				}
+			}
+		}, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+	}
+
+	public void playerJoined(UUID uuid, String name, String server) {
+		if(playerServers.put(uuid, server) == null)
+			names.put(uuid, name);
+	}
+
+	public void playerQuit(UUID uuid, String server) {
+		// A player switching servers may join the new one before quitting the old one
+		if(playerServers.remove(uuid, server))
+			names.remove(uuid);
+	}
+
+	public void nickChanged(UUID uuid) {
+		names.refresh(uuid);
+	}
+
+	public List<Player> matchPlayers(String lowerCase) {
+		return names.match(lowerCase);
+	}
+
+	public boolean isOnline(UUID uuid) {
+		return playerServers.containsKey(uuid);
+	}
+
+	public Set<String> getServers() {
+		return servers;
+	}
+
+	public List<UUID> getPlayers() {
+		return new ArrayList<>(playerServers.keySet());
+	}
+
+	public List<UUID> getPlayersOnServer(String server) {
+		final List<UUID> players = new ArrayList<>();
+		for(Map.Entry<UUID, String> entry : playerServers.entrySet())
+			if(entry.getValue().equals(server))
+				players.add(entry.getKey());
+		return players;
+	}
+
+	public void reconcile() {
+		final Set<String> activeServers = Main.redisManager.zrange("activeServers", 0, -1);
+		final Map<UUID, String> actual = new HashMap<>();
+		if(activeServers != null) {
+			for(String server : activeServers) {
+				final Set<String> onlineUUIDs = Main.redisManager.smembers("playersOnline:" + server);
+				if(onlineUUIDs == null)
+					continue;
+				for(String uuid : onlineUUIDs)
+					actual.put(UUID.fromString(uuid), server);
+			}
+		}
+
+		long corrections = 0;
+		for(Iterator<UUID> it = playerServers.keySet().iterator(); it.hasNext(); ) {
+			if(!actual.containsKey(it.next())) {
+				it.remove();
+				corrections++;
+			}
+		}
+		for(Map.Entry<UUID, String> entry : actual.entrySet()) {
+			if(!entry.getValue().equals(playerServers.put(entry.getKey(), entry.getValue())))
+				corrections++;
+		}
+		reconcileCorrections.addAndGet(corrections);
+
+		// Also picks up nicks changed by other links
+		names.rebuild(playerServers.keySet());
+
+		servers = (activeServers != null) ? Collections.unmodifiableSet(new LinkedHashSet<>(activeServers)) : Collections.<String>emptySet();
+	}
+}
@@ -16,11 +16,17 @@
  */
 package com.foxelbox.foxbukkit.chatlink.util;
 
+import com.foxelbox.dependencies.redis.AbstractRedisHandler;
 import com.foxelbox.foxbukkit.chatlink.Main;
 import com.foxelbox.foxbukkit.chatlink.Player;
 import com.foxelbox.foxbukkit.chatlink.permissions.FoxBukkitPermissionHandler;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -36,32 +42,100 @@ public static int getRankLevel(String rank) {
     }
 
     public static int getPlayerLevel(UUID uuid) {
-        return getRankLevel(getPlayerRank(uuid));
+        return getIdentity(uuid).getLevel();
     }
 
     public static String getPlayerRankTagRaw(UUID uuid) {
-        final String rank = getPlayerRank(uuid).toLowerCase();
-        if (rankTags.containsKey(rank))
-            return rankTags.get(rank);
+        return getRankTag(getPlayerRank(uuid));
+    }
+
+    private static String getRankTag(String rank) {
+        final String rankTag = rankTags.get(rank.toLowerCase());
+        if (rankTag != null)
+            return rankTag;
         return "\u00a77";
     }
 
 	public static String getPlayerRankTag(UUID uuid) {
-		final String rank = getPlayerRank(uuid).toLowerCase();
-		if (playerRankTags.containsKey(uuid.toString()))
-			return playerRankTags.get(uuid.toString());
-
-		return getPlayerRankTagRaw(uuid);
+		return getIdentity(uuid).rankTag;
 	}
 
 	public static String getPlayerTag(UUID uuid) {
-		final String rankTag = getPlayerRankTag(uuid);
+		return getIdentity(uuid).tag;
+	}
 
-		if (playerTags.containsKey(uuid.toString()))
-			return playerTags.get(uuid.toString()) + " " + rankTag;
+    private static final LoadingCache<UUID, PlayerIdentity> identities = CacheBuilder.newBuilder()
+            .expireAfterWrite(Integer.parseInt(Main.configuration.getValue("player-identity-ttl", "60")), TimeUnit.SECONDS)
+            .recordStats()
+            .build(new CacheLoader<UUID, PlayerIdentity>() {
+                @Override
+                public PlayerIdentity load(UUID uuid) {
+                    return loadIdentity(uuid);
+                }
+            });
+
+    static {
+        LinkStats.gauge("identity.cache.hits", new LinkStats.Gauge() {
+            @Override
+            public long get() {
+                return identities.stats().hitCount();
+            }
+        });
+        LinkStats.gauge("identity.cache.misses", new LinkStats.Gauge() {
+            @Override
+            public long get() {
+                return identities.stats().missCount();
+            }
+        });
+        LinkStats.gauge("identity.cache.size", new LinkStats.Gauge() {
+            @Override
+            public long get() {
+                return identities.size();
+            }
+        });
+
+        // Whoever changes a rank or tag elsewhere announces it here
+        new AbstractRedisHandler(Main.redisManager, "playerRankUpdate") {
+            @Override
+            public void onMessage(String message) {
+                try {
+                    invalidateIdentity(UUID.fromString(message.trim()));
+                } catch (IllegalArgumentException e) {
+                    identities.invalidateAll();
+                }
+            }
+        };
+    }
 
-		return rankTag;
-	}
+    private static PlayerIdentity loadIdentity(UUID uuid) {
+        final String uuidStr = uuid.toString();
+        final String rank = FoxBukkitPermissionHandler.instance.getGroup(uuid);
+
+        String rankTag = playerRankTags.get(uuidStr);
+        if (rankTag == null)
+            rankTag = getRankTag(rank);
+
+        final String playerTag = playerTags.get(uuidStr);
+        final String tag = (playerTag != null) ? playerTag + " " + rankTag : rankTag;
+
+        Integer level = null;
+        final String rankLevel = rankLevels.get(rank);
+        if (rankLevel != null) {
+            try {
+                level = Integer.parseInt(rankLevel);
+            } catch (NumberFormatException e) { }
+        }
+
+        return new PlayerIdentity(uuid, rank, playernicks.get(uuidStr), rankTag, tag, level);
+    }
+
+    public static PlayerIdentity getIdentity(UUID uuid) {
+        return identities.getUnchecked(uuid);
+    }
+
+    public static void invalidateIdentity(UUID uuid) {
+        identities.invalidate(uuid);
+    }
 
     public static String getPlayerTagRaw(UUID uuid, boolean rankTag) {
         final Map<String, String> tags = rankTag ? playerRankTags : playerTags;
@@ -74,14 +148,12 @@ public static void setPlayerTag(UUID uuid, String tag, boolean rankTag) {
             tags.remove(uuid.toString());
         else
             tags.put(uuid.toString(), tag);
+        invalidateIdentity(uuid);
     }
 
     public static Map<String,String> playernicks = Main.redisManager.createCachedRedisMap("playernicks");
 	public static String getPlayerNick(UUID uuid) {
-		if(playernicks.containsKey(uuid.toString()))
-			return playernicks.get(uuid.toString());
-		else
-			return null;
+		return getIdentity(uuid).nick;
 	}
 
     public static void setPlayerNick(UUID uuid, String nick) {
@@ -89,6 +161,8 @@ public static void setPlayerNick(UUID uuid, String nick) {
             playernicks.remove(uuid.toString());
         else
             playernicks.put(uuid.toString(), nick);
+        invalidateIdentity(uuid);
+        OnlinePlayerIndex.instance.nickChanged(uuid);
     }
 
 	public static String getPlayerRank(UUID uuid) {
@@ -96,10 +170,7 @@ public static String getPlayerRank(UUID uuid) {
 	}
 
 	public static String getFullPlayerName(UUID plyU, String plyN) {
-		String nick = getPlayerNick(plyU);
-		if(nick == null)
-			nick = plyN;
-		return getPlayerTag(plyU) + nick;
+		return getIdentity(plyU).getFullName(plyN);
 	}
 
     public static Map<String,String> playerNameToUUID = Main.redisManager.createCachedRedisMap("playerNameToUUID");
@@ -132,39 +203,25 @@ public static Player matchPlayerSingle(String subString, boolean implicitlyLiter
     }
 
     public static List<Player> getOnlinePlayersOnServer(String name) {
-        final Set<String> onlineUUIDs = Main.redisManager.smembers("playersOnline:" + name);
         final List<Player> onlinePlayers = new ArrayList<>();
-        if(onlineUUIDs == null)
-            return onlinePlayers;
-        for(String uuid : onlineUUIDs)
-            onlinePlayers.add(new Player(UUID.fromString(uuid)));
+        for(UUID uuid : OnlinePlayerIndex.instance.getPlayersOnServer(name))
+            onlinePlayers.add(new Player(uuid));
         return onlinePlayers;
     }
 
     public static Set<String> getAllServers() {
-        return Main.redisManager.zrange("activeServers", 0, -1);
+        return OnlinePlayerIndex.instance.getServers();
     }
 
     public static List<Player> getOnlinePlayersOnAllServers() {
-        List<Player> onlinePlayers = new ArrayList<>();
-        for(String name : getAllServers())
-            onlinePlayers.addAll(getOnlinePlayersOnServer(name));
+        final List<Player> onlinePlayers = new ArrayList<>();
+        for(UUID uuid : OnlinePlayerIndex.instance.getPlayers())
+            onlinePlayers.add(new Player(uuid));
         return onlinePlayers;
     }
 
     public static List<Player> matchPlayer(String subString) {
-        final String lowerCase = subString.toLowerCase();
-        List<Player> players = new ArrayList<>();
-        for (Player ply : getOnlinePlayersOnAllServers()) {
-            if(players.contains(ply))
-                continue;
-
-            if (!ply.getName().toLowerCase().contains(lowerCase) && !stripColor(ply.getDisplayName().toLowerCase()).contains(lowerCase))
-                continue;
-
-            players.add(ply);
-        }
-        return players;
+        return OnlinePlayerIndex.instance.matchPlayers(subString.toLowerCase());
     }
 
     public static Player matchPlayerSingle(String subString) throws PlayerNotFoundException, MultiplePlayersFoundException {
@@ -0,0 +1,54 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink.util;
+
+import java.util.UUID;
+
+/**
+ * Everything needed to render a player in chat, resolved once and cached by {@link PlayerHelper}.
+ */
+public class PlayerIdentity {
+	public final UUID uuid;
+	public final String rank;
+	public final String nick;
+	public final String rankTag;
+	public final String tag;
+	private final Integer level;
+	private final String nickedFullName;
+
+	PlayerIdentity(UUID uuid, String rank, String nick, String rankTag, String tag, Integer level) {
+		this.uuid = uuid;
+		this.rank = rank;
+		this.nick = nick;
+		this.rankTag = rankTag;
+		this.tag = tag;
+		this.level = level;
+		this.nickedFullName = (nick != null) ? tag + nick : null;
+	}
+
+	public int getLevel() {
+		if(level == null)
+			return PlayerHelper.getRankLevel(rank);
+		return level;
+	}
+
+	public String getFullName(String name) {
+		if(nickedFullName != null)
+			return nickedFullName;
+		return tag + name;
+	}
+}
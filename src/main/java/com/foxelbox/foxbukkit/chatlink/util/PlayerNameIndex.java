@@ -0,0 +1,203 @@
+/**
+ * This file is part of FoxBukkitChatLink.
+ *
+ * FoxBukkitChatLink is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FoxBukkitChatLink is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with FoxBukkitChatLink.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foxelbox.foxbukkit.chatlink.util;
+
+import com.foxelbox.foxbukkit.chatlink.Player;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trigram index over the lowercase name and color-stripped display name of online players.
+ * Queries shorter than a trigram fall back to scanning the precomputed strings.
+ */
+class PlayerNameIndex {
+	private static final int GRAM = 3;
+
+	private static class Entry {
+		final UUID uuid;
+		final String name;
+		final String lowerName;
+		final String strippedDisplayName;
+
+		Entry(UUID uuid, String name, String nick) {
+			this.uuid = uuid;
+			this.name = name;
+			this.lowerName = name.toLowerCase();
+			this.strippedDisplayName = PlayerHelper.stripColor(((nick != null) ? nick : name).toLowerCase());
+		}
+
+		boolean matches(String lowerCase) {
+			return lowerName.contains(lowerCase) || strippedDisplayName.contains(lowerCase);
+		}
+
+		Set<String> grams() {
+			final Set<String> grams = new HashSet<>();
+			addGrams(lowerName, grams);
+			addGrams(strippedDisplayName, grams);
+			return grams;
+		}
+	}
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private Map<UUID, Entry> entries = new HashMap<>();
+	private Map<String, Set<UUID>> postings = new HashMap<>();
+
+	private static void addGrams(String str, Set<String> grams) {
+		for(int i = 0; i + GRAM <= str.length(); i++)
+			grams.add(str.substring(i, i + GRAM));
+	}
+
+	private static Entry makeEntry(UUID uuid, String name) {
+		if(name == null)
+			name = PlayerHelper.playerUUIDToName.get(uuid.toString());
+		if(name == null)
+			return null;
+		return new Entry(uuid, name, PlayerHelper.getPlayerNick(uuid));
+	}
+
+	private static void addPostings(Map<String, Set<UUID>> postings, Entry entry) {
+		for(String gram : entry.grams()) {
+			Set<UUID> posting = postings.get(gram);
+			if(posting == null) {
+				posting = new HashSet<>();
+				postings.put(gram, posting);
+			}
+			posting.add(entry.uuid);
+		}
+	}
+
+	private void removeLocked(UUID uuid) {
+		final Entry old = entries.remove(uuid);
+		if(old == null)
+			return;
+		for(String gram : old.grams()) {
+			final Set<UUID> posting = postings.get(gram);
+			if(posting == null)
+				continue;
+			posting.remove(uuid);
+			if(posting.isEmpty())
+				postings.remove(gram);
+		}
+	}
+
+	public void put(UUID uuid, String name) {
+		final Entry entry = makeEntry(uuid, name);
+		lock.writeLock().lock();
+		try {
+			removeLocked(uuid);
+			if(entry != null) {
+				entries.put(uuid, entry);
+				addPostings(postings, entry);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(UUID uuid) {
+		lock.writeLock().lock();
+		try {
+			removeLocked(uuid);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void refresh(UUID uuid) {
+		final Entry old;
+		lock.readLock().lock();
+		try {
+			old = entries.get(uuid);
+		} finally {
+			lock.readLock().unlock();
+		}
+		if(old != null)
+			put(uuid, old.name);
+	}
+
+	public void rebuild(Collection<UUID> uuids) {
+		final Map<UUID, Entry> newEntries = new HashMap<>();
+		final Map<String, Set<UUID>> newPostings = new HashMap<>();
+		for(UUID uuid : uuids) {
+			final Entry entry = makeEntry(uuid, null);
+			if(entry == null)
+				continue;
+			newEntries.put(uuid, entry);
+			addPostings(newPostings, entry);
+		}
+
+		lock.writeLock().lock();
+		try {
+			entries = newEntries;
+			postings = newPostings;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public List<Player> match(String lowerCase) {
+		final List<Entry> matches = new ArrayList<>();
+		lock.readLock().lock();
+		try {
+			if(lowerCase.length() < GRAM) {
+				for(Entry entry : entries.values())
+					if(entry.matches(lowerCase))
+						matches.add(entry);
+			} else {
+				for(UUID uuid : candidates(lowerCase)) {
+					final Entry entry = entries.get(uuid);
+					if(entry.matches(lowerCase))
+						matches.add(entry);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		final List<Player> players = new ArrayList<>(matches.size());
+		for(Entry entry : matches)
+			players.add(new Player(entry.uuid, entry.name));
+		return players;
+	}
+
+	private Set<UUID> candidates(String lowerCase) {
+		final Set<String> grams = new HashSet<>();
+		addGrams(lowerCase, grams);
+
+		// Intersect starting from the rarest gram
+		final List<Set<UUID>> sets = new ArrayList<>(grams.size());
+		for(String gram : grams) {
+			final Set<UUID> posting = postings.get(gram);
+			if(posting == null)
+				return Collections.emptySet();
+			sets.add(posting);
+		}
+		Collections.sort(sets, new Comparator<Set<UUID>>() {
+			@Override
+			public int compare(Set<UUID> a, Set<UUID> b) {
+				return Integer.compare(a.size(), b.size());
+			}
+		});
+
+		final Set<UUID> result = new HashSet<>(sets.get(0));
+		for(int i = 1; i < sets.size() && !result.isEmpty(); i++)
+			result.retainAll(sets.get(i));
+		return result;
+	}
+}
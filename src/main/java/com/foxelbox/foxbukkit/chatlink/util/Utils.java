@@ -73,16 +73,56 @@ public static String URLEncode(String str) {
 		}
 	}
 
-	public static String XMLEscape(String s) {
-		s = s.replace("&", "&amp;");
-		s = s.replace("\"", "&quot;");
-		s = s.replace("'", "&apos;");
-		s = s.replace("<", "&lt;");
-		s = s.replace(">", "&gt;");
+	private static String XMLEntity(char c) {
+		switch(c) {
+			case '&':
+				return "&amp;";
+			case '"':
+				return "&quot;";
+			case '\'':
+				return "&apos;";
+			case '<':
+				return "&lt;";
+			case '>':
+				return "&gt;";
+			default:
+				return null;
+		}
+	}
 
+	/**
+	 * Returns s itself if there is nothing to escape
+	 */
+	public static String XMLEscape(String s) {
+		final int length = s.length();
+		for(int i = 0; i < length; i++) {
+			if(XMLEntity(s.charAt(i)) != null) {
+				final StringBuilder out = new StringBuilder(length + 16);
+				out.append(s, 0, i);
+				return XMLEscape(s, i, out).toString();
+			}
+		}
 		return s;
 	}
 
+	public static StringBuilder XMLEscape(String s, StringBuilder out) {
+		return XMLEscape(s, 0, out);
+	}
+
+	private static StringBuilder XMLEscape(String s, int start, StringBuilder out) {
+		final int length = s.length();
+		int runStart = start;
+		for(int i = start; i < length; i++) {
+			final String entity = XMLEntity(s.charAt(i));
+			if(entity == null)
+				continue;
+			out.append(s, runStart, i);
+			out.append(entity);
+			runStart = i + 1;
+		}
+		return out.append(s, runStart, length);
+	}
+
 	public static <T> List<Class<? extends T>> getSubClasses(Class<T> baseClass, String packageName) {
 		final List<Class<? extends T>> ret = new ArrayList<>();
 		final File file;